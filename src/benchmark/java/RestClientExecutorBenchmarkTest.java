@@ -0,0 +1,173 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.IRestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.RestClientExecutor;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares chains run on virtual threads with chains run on a fixed platform thread pool, against a local server
+ * answering each request after a fixed latency. Run with {@code ./gradlew benchmark}, which uses a Java 21
+ * toolchain.
+ */
+public class RestClientExecutorBenchmarkTest {
+    private static final int LATENCY_MILLIS = 5;
+    private static final int PLATFORM_THREADS = 50;
+    private static final int MAX_CONCURRENCY = 200;
+
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static RestClientConfiguration configuration;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(serverExecutor);
+
+        String baseURL = "http://localhost:" + server.getAddress().getPort();
+
+        server.createContext("/token", exchange -> respond(exchange,
+                "{\"access_token\":\"benchmark\",\"expires_in\":3600}"));
+        server.createContext("/api", exchange -> respond(exchange,
+                "{\"links\":{\"related\":[{\"rel\":\"" + JsonApiRestResponseWrapper.API_COLLECTION + "\",\"href\":\"" + baseURL + "/apis\"}]}}"));
+        server.createContext("/apis", exchange -> respond(exchange,
+                "{\"data\":[{\"id\":\"benchmark\",\"links\":{\"self\":\"" + baseURL + "/resource\"}}]}"));
+        server.createContext("/resource", exchange -> respond(exchange,
+                "{\"data\":{}}"));
+
+        server.start();
+
+        configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(baseURL + "/token");
+        configuration.setApiURL(baseURL + "/api");
+        configuration.setPathCacheSize(0);
+        configuration.setMaxConnectionsTotal(MAX_CONCURRENCY);
+        configuration.setMaxConnectionsPerRoute(MAX_CONCURRENCY);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        IRestClient.close(configuration);
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void virtualThreads_1k(TestReporter reporter) throws Exception {
+        compare(1_000, reporter);
+    }
+
+    @Test
+    public void virtualThreads_10k(TestReporter reporter) throws Exception {
+        compare(10_000, reporter);
+    }
+
+    /**
+     * Runs the chains on both executors. Chains wait on the server, so the virtual thread executor, with more
+     * chains in flight, must finish at least as fast as the platform thread pool.
+     */
+    private void compare(int chains, TestReporter reporter) throws Exception {
+        // Warms up the connection pool, token and endpoint caches
+        run(RestClientExecutor.platformThreads(PLATFORM_THREADS), MAX_CONCURRENCY);
+
+        long platform = run(RestClientExecutor.platformThreads(PLATFORM_THREADS), chains);
+        long virtual = run(RestClientExecutor.virtualThreads(MAX_CONCURRENCY), chains);
+
+        reporter.publishEntry("platform-" + chains, chains + " chains in " + platform + " ms on " + PLATFORM_THREADS + " platform threads");
+        reporter.publishEntry("virtual-" + chains, chains + " chains in " + virtual + " ms on virtual threads, " + MAX_CONCURRENCY + " in flight");
+
+        assertTrue(virtual <= platform, String.format(
+                "%d chains took %d ms on virtual threads and %d ms on platform threads",
+                chains,
+                virtual,
+                platform
+        ));
+    }
+
+    /**
+     * Runs the chains and returns the elapsed milliseconds.
+     */
+    private long run(RestClientExecutor executor, int chains) throws Exception {
+        List<CompletableFuture<ApiDataRestEntity>> results = new ArrayList<>(chains);
+        AtomicInteger onVirtualThread = new AtomicInteger();
+        long start = System.nanoTime();
+
+        try (RestClientExecutor ignored = executor) {
+            for (int i = 0; i < chains; i++) {
+                results.add(executor.submit(() -> {
+                    if(Thread.currentThread().isVirtual()) {
+                        onVirtualThread.incrementAndGet();
+                    }
+
+                    return IRestClient.withConfiguration(configuration)
+                            .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                            .followResource("benchmark")
+                            .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+                }));
+            }
+
+            for (CompletableFuture<ApiDataRestEntity> result : results) {
+                assertNotNull(result.get(1, TimeUnit.MINUTES));
+            }
+        }
+
+        assertEquals(executor.isVirtual() ? chains : 0, onVirtualThread.get());
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        try {
+            Thread.sleep(LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.api.rest.ApiVersionDataRestEntity;
+import io.apimap.api.rest.MetadataDataRestEntity;
+import io.apimap.client.BulkPublisher;
+import io.apimap.client.PublishItem;
+import io.apimap.client.PublishResult;
+import io.apimap.client.RestClientConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkPublisherTest {
+    @Test
+    public void publishApis_didSucceed() {
+        List<PublishItem> items = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            items.add(item("bulk-api-" + i, "1"));
+            items.add(item("bulk-api-" + i, "2"));
+        }
+
+        RestClientConfiguration configuration = new RestClientConfiguration("http://localhost:8080");
+        configuration.setSecret("c1ceb4f6-b4b3-4553-b1b7-9fe5611b019b");
+
+        List<PublishResult> results = BulkPublisher.withConfiguration(configuration)
+                .withParallelism(4)
+                .publish(items);
+
+        assertEquals(items.size(), results.size());
+
+        for (PublishResult result : results) {
+            assertTrue(result.isSuccessful(), result.toString());
+        }
+    }
+
+    private PublishItem item(String name, String version) {
+        MetadataDataRestEntity metadata = new MetadataDataRestEntity(
+                name,
+                "description",
+                "visibility",
+                version,
+                "releaseStatus",
+                "interfaceSpecification",
+                "interfaceDescriptionLanguage",
+                "architectureLayer",
+                "businessUnit",
+                "systemIdentifier",
+                Arrays.asList(new String[]{"url1", "url2"})
+        );
+
+        return new PublishItem(
+                new ApiDataRestEntity(name, "git://"),
+                new ApiVersionDataRestEntity(version),
+                metadata
+        ).withReadme("# " + name);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.apimap.client.IRestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes and reads a large readme through a local server that accepts and sends gzip bodies, and compares the
+ * bytes on the wire with the size of the readme. JSON bodies are only compressed once they reach the threshold.
+ */
+public class CompressionTest {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    private static final AtomicReference<String> readme = new AtomicReference<>("");
+    private static final AtomicReference<String> requestEncoding = new AtomicReference<>();
+    private static final AtomicLong requestBytes = new AtomicLong();
+    private static final AtomicReference<String> jsonEncoding = new AtomicReference<>();
+    private static final AtomicLong jsonLength = new AtomicLong();
+    private static final AtomicLong responseBytes = new AtomicLong();
+
+    private static HttpServer server;
+    private static RestClientConfiguration configuration;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+
+        String baseURL = "http://localhost:" + server.getAddress().getPort();
+
+        server.createContext("/token", exchange -> respond(exchange,
+                "{\"access_token\":\"compression\",\"expires_in\":3600}", "application/json"));
+        server.createContext("/api", exchange -> respond(exchange,
+                "{\"links\":{\"related\":[{\"rel\":\"" + JsonApiRestResponseWrapper.API_COLLECTION + "\",\"href\":\"" + baseURL + "/apis\"}]}}", "application/json"));
+        server.createContext("/apis", exchange -> respond(exchange,
+                "{\"data\":[{\"id\":\"compression\",\"links\":{\"self\":\"" + baseURL + "/readme\"}},"
+                        + "{\"id\":\"json\",\"links\":{\"self\":\"" + baseURL + "/json\"}}]}", "application/json"));
+        server.createContext("/json", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            jsonEncoding.set(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            jsonLength.set(length != null ? Long.parseLong(length) : -1);
+
+            if("gzip".equals(jsonEncoding.get())) {
+                body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+            }
+
+            respond(exchange, new String(body, StandardCharsets.UTF_8), "application/json");
+        });
+        server.createContext("/readme", exchange -> {
+            if("PUT".equals(exchange.getRequestMethod())) {
+                byte[] body = readAll(exchange.getRequestBody());
+                requestBytes.set(body.length);
+                requestEncoding.set(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+
+                if("gzip".equals(requestEncoding.get())) {
+                    body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+                }
+
+                readme.set(new String(body, StandardCharsets.UTF_8));
+            }
+
+            respond(exchange, readme.get(), "text/markdown");
+        });
+
+        server.start();
+
+        configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(baseURL + "/token");
+        configuration.setApiURL(baseURL + "/api");
+        configuration.setCompressRequests(true);
+        configuration.setCompressionThresholdBytes(1024);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        IRestClient.close(configuration);
+        server.stop(0);
+    }
+
+    @Test
+    public void largeReadme_isCompressedBothWays() throws Exception, IncorrectTokenException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            content.append("## Section ").append(i).append("\n\nThe API returns the resource as JSON:API.\n\n");
+        }
+        String expected = content.toString();
+
+        IRestClient.withConfiguration(configuration)
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("compression")
+                .createOrUpdateResource(expected, MARKDOWN);
+
+        assertEquals(expected, readme.get());
+        assertEquals("gzip", requestEncoding.get());
+        assertTrue(requestBytes.get() < expected.length() / 4);
+
+        String read = IRestClient.withConfiguration(configuration)
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("compression")
+                .getResource(String.class, MARKDOWN);
+
+        assertEquals(expected.trim(), read.trim());
+        assertTrue(responseBytes.get() < expected.length() / 4);
+
+        System.out.println(String.format(
+                "[COMPRESSION] readme %d bytes, sent %d bytes, received %d bytes",
+                expected.length(),
+                requestBytes.get(),
+                responseBytes.get()
+        ));
+    }
+
+    @Test
+    public void smallJsonBody_isSentUncompressed() throws Exception, IncorrectTokenException {
+        Item item = writeItem("small");
+
+        assertEquals("small", item.getDescription());
+        assertNull(jsonEncoding.get());
+        assertTrue(jsonLength.get() > 0);
+    }
+
+    @Test
+    public void largeJsonBody_isCompressed() throws Exception, IncorrectTokenException {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            description.append("The API returns the resource as JSON:API. ");
+        }
+
+        Item item = writeItem(description.toString());
+
+        assertEquals(description.toString(), item.getDescription());
+        assertEquals("gzip", jsonEncoding.get());
+        assertEquals(-1, jsonLength.get());
+    }
+
+    private Item writeItem(String description) throws Exception, IncorrectTokenException {
+        Item item = new Item();
+        item.setDescription(description);
+
+        return IRestClient.withConfiguration(configuration)
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("json")
+                .createOrUpdateResource(item, ContentType.APPLICATION_JSON);
+    }
+
+    public static class Item {
+        private String description;
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * Sends the body gzip compressed if the client accepts it.
+     */
+    private static void respond(HttpExchange exchange, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        if(acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+                outputStream.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        if(exchange.getRequestURI().getPath().equals("/readme")) {
+            responseBytes.set(bytes.length);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.apimap.client.IRestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Uploads a readme from a file and downloads it to a stream and to a file through a local server, and checks
+ * that the bytes, line endings included, arrive unchanged.
+ */
+public class FileTransferTest {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    private static final AtomicReference<byte[]> readme = new AtomicReference<>(new byte[0]);
+
+    private static HttpServer server;
+    private static RestClientConfiguration configuration;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+
+        String baseURL = "http://localhost:" + server.getAddress().getPort();
+
+        server.createContext("/token", exchange -> respond(exchange,
+                "{\"access_token\":\"file\",\"expires_in\":3600}".getBytes(StandardCharsets.UTF_8), "application/json"));
+        server.createContext("/api", exchange -> respond(exchange,
+                ("{\"links\":{\"related\":[{\"rel\":\"" + JsonApiRestResponseWrapper.API_COLLECTION + "\",\"href\":\"" + baseURL + "/apis\"}]}}").getBytes(StandardCharsets.UTF_8), "application/json"));
+        server.createContext("/apis", exchange -> respond(exchange,
+                ("{\"data\":[{\"id\":\"file\",\"links\":{\"self\":\"" + baseURL + "/readme\"}}]}").getBytes(StandardCharsets.UTF_8), "application/json"));
+        server.createContext("/readme", exchange -> {
+            if("PUT".equals(exchange.getRequestMethod())) {
+                readme.set(readAll(exchange.getRequestBody()));
+            }
+
+            respond(exchange, readme.get(), "text/markdown");
+        });
+
+        server.start();
+
+        configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(baseURL + "/token");
+        configuration.setApiURL(baseURL + "/api");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        IRestClient.close(configuration);
+        server.stop(0);
+    }
+
+    @Test
+    public void readme_isTransferredUnchanged() throws Exception, IncorrectTokenException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            content.append("## Section ").append(i).append("\r\n\r\nThe API returns the resource as JSON:API.\r\n");
+        }
+        byte[] expected = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        Path upload = Files.createTempFile("apimap-upload", ".md");
+        Path download = Files.createTempFile("apimap-download", ".md");
+
+        try {
+            Files.write(upload, expected);
+
+            int status = IRestClient.withConfiguration(configuration)
+                    .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                    .followResource("file")
+                    .createOrUpdateResource(upload, MARKDOWN);
+
+            assertEquals(200, status);
+            assertArrayEquals(expected, readme.get());
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            long streamed = IRestClient.withConfiguration(configuration)
+                    .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                    .followResource("file")
+                    .getResource(stream);
+
+            assertEquals(expected.length, streamed);
+            assertArrayEquals(expected, stream.toByteArray());
+
+            Files.write(download, "previous content".getBytes(StandardCharsets.UTF_8));
+
+            long written = IRestClient.withConfiguration(configuration)
+                    .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                    .followResource("file")
+                    .getResource(download);
+
+            assertEquals(expected.length, written);
+            assertArrayEquals(expected, Files.readAllBytes(download));
+        } finally {
+            Files.deleteIfExists(upload);
+            Files.deleteIfExists(download);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.client.client.JsonCodec;
+import io.apimap.client.client.JsonEntity;
+import io.apimap.rest.jsonapi.JsonApiRestRequestWrapper;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the bytes allocated to write one PUT body as a String based entity and as a streamed {@link JsonEntity}.
+ */
+public class JsonEntityAllocationTest {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void streamedBody_allocatesLessThanStringBody() throws IOException {
+        JsonApiRestRequestWrapper<Object> body = new JsonApiRestRequestWrapper<>(metadata());
+
+        long stringBytes = allocatedPerWrite(() -> new StringEntity(
+                JsonCodec.requestWriter().writeValueAsString(body),
+                ContentType.create("application/json")));
+
+        long streamedBytes = allocatedPerWrite(() -> new JsonEntity(body));
+
+        assertTrue(streamedBytes < stringBytes / 2, String.format(
+                "%d bytes per PUT body as String, %d bytes streamed",
+                stringBytes,
+                streamedBytes
+        ));
+    }
+
+    @Test
+    public void streamedBody_serializedOncePerWrite() throws IOException {
+        CountedValue value = new CountedValue();
+        JsonEntity entity = new JsonEntity(value);
+
+        write(entity, new DiscardingOutputStream());
+
+        assertEquals(-1, entity.getContentLength());
+        assertEquals(1, value.reads);
+    }
+
+    private interface EntityFactory {
+        HttpEntity create() throws IOException;
+    }
+
+    private static long allocatedPerWrite(EntityFactory factory) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        OutputStream socket = new DiscardingOutputStream();
+
+        for (int i = 0; i < WARMUP; i++) {
+            write(factory.create(), socket);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            write(factory.create(), socket);
+        }
+
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+
+    /**
+     * What the http client does with a request entity: read the length for the header, then write the body.
+     */
+    private static void write(HttpEntity entity, OutputStream socket) throws IOException {
+        entity.getContentLength();
+        entity.writeTo(socket);
+    }
+
+    /**
+     * Metadata with an interface specification of a few hundred KB, as sent by our larger APIs.
+     */
+    private static Map<String, Object> metadata() {
+        StringBuilder specification = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            specification.append("paths./resources/").append(i).append(".get.responses.200.description: OK\n");
+        }
+
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tags.add("tag-" + i);
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", "allocation");
+        metadata.put("description", "Allocation test");
+        metadata.put("tags", tags);
+        metadata.put("interfaceSpecification", specification.toString());
+        return metadata;
+    }
+
+    /**
+     * Value counting how often Jackson serializes it.
+     */
+    public static final class CountedValue {
+        private int reads;
+
+        public String getName() {
+            reads++;
+            return "counted";
+        }
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.client.client.AccessToken;
+import io.apimap.client.client.BaseAsyncRestClient;
+import io.apimap.client.client.BaseRestClient;
+import io.apimap.client.client.query.CollectionTraversingQuery;
+import io.apimap.client.client.query.CreateResourceQuery;
+import io.apimap.client.client.query.RelationshipTraversingQuery;
+import io.apimap.client.client.query.ResourceTraversingQuery;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.client.exception.ResourceNotFoundException;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking version of {@link RestClient}. The traversal and the operation run on the async http client,
+ * and the result is delivered through the returned future.
+ *
+ * Errors are reported to the error handler and complete the future with null, the same way {@link RestClient}
+ * returns null. An {@link IncorrectTokenException} completes the future exceptionally.
+ */
+public class AsyncRestClient extends BaseAsyncRestClient implements IAsyncRestClient {
+
+    protected Consumer<String> errorHandler;
+
+    public AsyncRestClient(RestClientConfiguration configuration) {
+        super(configuration);
+    }
+
+    public AsyncRestClient(RestClientConfiguration configuration, CloseableHttpAsyncClient httpClient) {
+        super(configuration, httpClient);
+    }
+
+    public AsyncRestClient(RestClientConfiguration configuration, CloseableHttpAsyncClient httpClient, Consumer<String> errorHandler) {
+        super(configuration, httpClient);
+        this.errorHandler = errorHandler;
+    }
+
+    public AsyncRestClient withErrorHandler(Consumer<String> handler){
+        this.errorHandler = handler;
+        return this;
+    }
+
+    public AsyncRestClient withApiToken(String token){
+        this.apiToken = Optional.ofNullable(token);
+        return this;
+    }
+
+    public AsyncRestClient followCollection(String relationshipId, String key) {
+        addApiQuery(new RelationshipTraversingQuery(key, relationshipId));
+        return this;
+    }
+
+    public AsyncRestClient followResource(String key) {
+        addApiQuery(new ResourceTraversingQuery(key));
+        return this;
+    }
+
+    public AsyncRestClient onMissingCreate(String key, Object object, Consumer<Object> callback) {
+        addApiQuery(new CreateResourceQuery(key, object, callback, ContentType.APPLICATION_JSON));
+        return this;
+    }
+
+    /**
+     * Like {@link #onMissingCreate(String, Object, Consumer)}, with the strategy used to find out whether the
+     * resource is missing, see {@link CreateResourceQuery.STRATEGY}.
+     */
+    public AsyncRestClient onMissingCreate(String key, Object object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+        addApiQuery(new CreateResourceQuery(key, object, callback, ContentType.APPLICATION_JSON, strategy));
+        return this;
+    }
+
+    /**
+     * Like {@link #onMissingCreate(String, Object, Consumer)}, but the object is only built if the resource is
+     * missing. The class is the type of the object, and of the created resource passed to the callback.
+     */
+    public <T> AsyncRestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback) {
+        return onMissingCreate(key, resourceClassType, object, callback, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+    }
+
+    public <T> AsyncRestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+        addApiQuery(new CreateResourceQuery(key, resourceClassType, object, callback, ContentType.APPLICATION_JSON, strategy));
+        return this;
+    }
+
+    public AsyncRestClient followCollection(String key) {
+        addApiQuery(new CollectionTraversingQuery(key));
+        return this;
+    }
+
+    public CompletableFuture<Integer> deleteResource() {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return CompletableFuture.completedFuture(204);
+        }
+
+        return performOperation("", (contentURI, jwt, httpClient) ->
+                deleteResource(contentURI, jwt, httpClient)
+        ).thenApply(returnValue -> returnValue != null ? returnValue : -1);
+    }
+
+    public <T> CompletableFuture<T> getResource(Class<T> resourceClassType, ContentType contentType) {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return CompletableFuture.completedFuture(dryRunInstance(resourceClassType));
+        }
+
+        return performOperation("[GET] ", (contentURI, jwt, httpClient) ->
+                getResource(contentURI, resourceClassType, contentType, jwt, httpClient)
+        );
+    }
+
+    public <T> CompletableFuture<T> createResource(T object, ContentType contentType) {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return CompletableFuture.completedFuture((T) dryRunInstance(object.getClass()));
+        }
+
+        return performOperation("[POST] ", (contentURI, jwt, httpClient) ->
+                postResource(contentURI, object, (Class<T>) object.getClass(), contentType, jwt, httpClient)
+        );
+    }
+
+    public <T> CompletableFuture<T> createOrUpdateResource(T object, ContentType contentType) {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return CompletableFuture.completedFuture((T) dryRunInstance(object.getClass()));
+        }
+
+        return performOperation("[PUT] ", (contentURI, jwt, httpClient) ->
+                putResource(contentURI, object, (Class<T>) object.getClass(), contentType, jwt, httpClient)
+        );
+    }
+
+    protected interface Operation<R> {
+        CompletableFuture<R> perform(URI contentURI, AccessToken jwt, CloseableHttpAsyncClient httpClient);
+    }
+
+    /**
+     * Resolves the endpoints, token and path to the resource before performing the operation on it. If the resource
+     * is missing at a cached path the queries are performed again and the operation is retried once.
+     */
+    protected <R> CompletableFuture<R> performOperation(String action, Operation<R> operation) {
+        // The configuration can't be changed once an operation has used it
+        configuration.ifPresent(RestClientConfiguration::sharedKey);
+        CloseableHttpAsyncClient httpClient = defaultCloseableHttpAsyncClient();
+
+        CompletableFuture<R> result = getEndpoints(httpClient).thenCompose(endpoints -> {
+            if(endpoints == null){
+                reportError(action + "Unable to get zeroconf");
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return getJwtToken(httpClient, endpoints.getOrchestra()).thenCompose(jwt -> {
+                if(jwt == null){
+                    reportError(action + "Unable to get jwt");
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                return performOperation(action, operation, endpoints, jwt, httpClient, true);
+            });
+        });
+
+        return result.handle((value, error) -> {
+            if(error == null) {
+                return CompletableFuture.completedFuture(value);
+            }
+
+            Throwable cause = unwrap(error);
+
+            if(cause instanceof IncorrectTokenException) {
+                return AsyncRestClient.<R>failedFuture(cause);
+            }
+
+            reportError(cause.getMessage());
+            return CompletableFuture.<R>completedFuture(null);
+        }).thenCompose(future -> future);
+    }
+
+    private <R> CompletableFuture<R> performOperation(String action, Operation<R> operation, BaseRestClient.Endpoints endpoints, AccessToken jwt, CloseableHttpAsyncClient httpClient, boolean retry) {
+        return performQueries(httpClient, endpoints.getApi(), jwt).thenCompose(contentURI -> {
+            if(contentURI == null){
+                reportError(action + "Unable to travers path to resource");
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return operation.perform(contentURI, jwt, httpClient)
+                    .handle((value, error) -> {
+                        if(error == null) {
+                            return CompletableFuture.completedFuture(value);
+                        }
+
+                        if(retry && unwrap(error) instanceof ResourceNotFoundException && invalidateQueries(endpoints.getApi())) {
+                            return performOperation(action, operation, endpoints, jwt, httpClient, false);
+                        }
+
+                        return AsyncRestClient.<R>failedFuture(unwrap(error));
+                    })
+                    .thenCompose(future -> future);
+        });
+    }
+
+    protected <T> T dryRunInstance(Class<T> resourceClassType) {
+        try {
+            return resourceClassType.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            reportError(e.getMessage());
+            return null;
+        }
+    }
+
+    protected void reportError(String message) {
+        if(this.errorHandler != null){
+            this.errorHandler.accept(message);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncRestClient{" +
+                "errorHandler=" + errorHandler +
+                ", configuration=" + configuration +
+                ", queries=" + queries +
+                '}';
+    }
+}
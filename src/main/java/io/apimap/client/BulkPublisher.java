@@ -0,0 +1,190 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.api.rest.MetadataDataRestEntity;
+import io.apimap.client.client.ListingCache;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Publishes many API versions in one batch, see {@link PublishItem}.
+ *
+ * Each item runs the same chain as a single publish: create the API and the version if missing, then replace the
+ * metadata, readme and changelog. Items run in parallel, except items of the same API which run in order so the
+ * API is only created once. The root document and collection listings are read once for the whole batch, and
+ * the zeroconf endpoints and JWT token are shared through the client caches.
+ */
+public class BulkPublisher {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    private final RestClientConfiguration configuration;
+    private int parallelism;
+
+    public BulkPublisher(RestClientConfiguration configuration) {
+        this.configuration = configuration;
+        this.parallelism = configuration.getMaxConnectionsPerRoute();
+    }
+
+    public static BulkPublisher withConfiguration(RestClientConfiguration configuration) {
+        return new BulkPublisher(configuration);
+    }
+
+    /**
+     * Maximum number of APIs published at the same time, defaults to the connections per route of the configuration.
+     */
+    public BulkPublisher withParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Publishes all items and returns one result per item, in the order of the items.
+     */
+    public List<PublishResult> publish(List<PublishItem> items) {
+        List<PublishResult> results = new ArrayList<>(items.size());
+        Map<String, List<PublishResult>> apis = new LinkedHashMap<>();
+
+        for (PublishItem item : items) {
+            PublishResult result = new PublishResult(item);
+            results.add(result);
+            apis.computeIfAbsent(item.getMetadata().getName(), name -> new ArrayList<>()).add(result);
+        }
+
+        ListingCache listingCache = new ListingCache();
+        List<CompletableFuture<Void>> pending = new ArrayList<>(apis.size());
+
+        try (RestClientExecutor executor = RestClientExecutor.virtualThreads(parallelism)) {
+            for (List<PublishResult> api : apis.values()) {
+                pending.add(executor.submit(() -> {
+                    publishApi(api, listingCache);
+                    return null;
+                }));
+            }
+        }
+
+        for (CompletableFuture<Void> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // Errors are recorded on the results of the items
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Publishes the items of one API in order, passing the API token on from the item that created the API.
+     */
+    protected void publishApi(List<PublishResult> results, ListingCache listingCache) {
+        String apiToken = null;
+
+        for (PublishResult result : results) {
+            if(result.getItem().getApiToken().isPresent()) {
+                apiToken = result.getItem().getApiToken().get();
+            }
+
+            apiToken = publishItem(result, apiToken, listingCache);
+        }
+    }
+
+    protected String publishItem(PublishResult result, String apiToken, ListingCache listingCache) {
+        PublishItem item = result.getItem();
+        String name = item.getMetadata().getName();
+        String version = item.getMetadata().getApiVersion();
+
+        AtomicReference<String> token = new AtomicReference<>(apiToken);
+
+        Consumer<Object> apiCreatedCallback = content -> {
+            if(content instanceof ApiDataRestEntity && ((ApiDataRestEntity) content).getMeta() != null) {
+                token.set(((ApiDataRestEntity) content).getMeta().getToken());
+                result.setCreatedApiToken(token.get());
+            }
+        };
+
+        try {
+            MetadataDataRestEntity metadata = client(result, token.get(), listingCache)
+                    .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                    .followCollection(name, JsonApiRestResponseWrapper.VERSION_COLLECTION)
+                    .onMissingCreate(name, item.getApi(), apiCreatedCallback)
+                    .followResource(version)
+                    .onMissingCreate(version, item.getVersion(), null)
+                    .followCollection(JsonApiRestResponseWrapper.METADATA_COLLECTION)
+                    .createOrUpdateResource(item.getMetadata(), ContentType.APPLICATION_JSON);
+
+            result.setMetadata(metadata);
+
+            if(metadata == null) {
+                return token.get();
+            }
+
+            if(item.getReadme().isPresent()) {
+                publishDocument(result, token.get(), listingCache, JsonApiRestResponseWrapper.README_ELEMENT, item.getReadme().get());
+            }
+
+            if(item.getChangelog().isPresent()) {
+                publishDocument(result, token.get(), listingCache, JsonApiRestResponseWrapper.CHANGELOG_ELEMENT, item.getChangelog().get());
+            }
+        } catch (IOException | IncorrectTokenException e) {
+            result.addError(e.getMessage());
+        }
+
+        return token.get();
+    }
+
+    protected void publishDocument(PublishResult result, String apiToken, ListingCache listingCache, String element, String content) throws IOException, IncorrectTokenException {
+        client(result, apiToken, listingCache)
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followCollection(result.getItem().getMetadata().getName(), JsonApiRestResponseWrapper.VERSION_COLLECTION)
+                .followResource(result.getItem().getMetadata().getApiVersion())
+                .followCollection(element)
+                .createOrUpdateResource(content, MARKDOWN);
+    }
+
+    protected RestClient client(PublishResult result, String apiToken, ListingCache listingCache) {
+        RestClient client = new RestClient(configuration);
+        client.setListingCache(listingCache);
+
+        return client
+                .withApiToken(apiToken)
+                .withErrorHandler(result::addError);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPublisher{" +
+                "configuration=" + configuration +
+                ", parallelism=" + parallelism +
+                '}';
+    }
+}
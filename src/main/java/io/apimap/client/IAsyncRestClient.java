@@ -0,0 +1,49 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.client.client.query.CreateResourceQuery;
+import org.apache.hc.core5.http.ContentType;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public interface IAsyncRestClient {
+    public AsyncRestClient withErrorHandler(Consumer<String> callback);
+    public AsyncRestClient withApiToken(String token);
+
+    // Traversing methods
+    public AsyncRestClient followCollection(String relationshipId, String key);
+    public AsyncRestClient followResource(String resourceKey);
+    public AsyncRestClient onMissingCreate(String key, Object object, Consumer<Object> callback);
+    public AsyncRestClient onMissingCreate(String key, Object object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy);
+    public <T> AsyncRestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback);
+    public <T> AsyncRestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy);
+    public AsyncRestClient followCollection(String collectionKey);
+
+    // State change
+    public CompletableFuture<Integer> deleteResource();
+    public <T> CompletableFuture<T> getResource(Class<T> resourceClassType, ContentType contentType);
+    public <T> CompletableFuture<T> createResource(T resource, ContentType contentType);
+    public <T> CompletableFuture<T> createOrUpdateResource(T resource, ContentType contentType);
+
+    public static
+    AsyncRestClient withConfiguration(RestClientConfiguration configuration) {
+        return new AsyncRestClient(configuration);
+    }
+}
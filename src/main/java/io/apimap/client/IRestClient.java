@@ -16,11 +16,16 @@ limitations under the License.
 
 package io.apimap.client;
 
+import io.apimap.client.client.HttpClientRegistry;
+import io.apimap.client.client.query.CreateResourceQuery;
 import io.apimap.client.exception.IncorrectTokenException;
 import org.apache.hc.core5.http.ContentType;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public interface IRestClient {
     public RestClient withErrorHandler(Consumer<String> callback);
@@ -30,16 +35,29 @@ public interface IRestClient {
     public RestClient followCollection(String relationshipId, String key);
     public RestClient followResource(String resourceKey);
     public RestClient onMissingCreate(String key, Object object, Consumer<Object> callback);
+    public RestClient onMissingCreate(String key, Object object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy);
+    public <T> RestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback);
+    public <T> RestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy);
     public RestClient followCollection(String collectionKey);
 
     // State change
     public int deleteResource() throws IOException, IncorrectTokenException;
     public <T> T getResource(Class<T> resourceClassType, ContentType contentType) throws IOException, IncorrectTokenException;
+    public long getResource(OutputStream target) throws IOException, IncorrectTokenException;
+    public long getResource(Path target) throws IOException, IncorrectTokenException;
     public <T> T createResource(T resource, ContentType contentType) throws IOException, IncorrectTokenException;
     public <T> T createOrUpdateResource(T resource, ContentType contentType) throws IOException, IncorrectTokenException;
+    public int createResource(Path file, ContentType contentType) throws IOException, IncorrectTokenException;
+    public int createOrUpdateResource(Path file, ContentType contentType) throws IOException, IncorrectTokenException;
+    public <T> WriteResult<T> createOrUpdateResourceIfChanged(T resource, ContentType contentType) throws IOException, IncorrectTokenException;
 
     public static
     RestClient withConfiguration(RestClientConfiguration configuration) {
         return new RestClient(configuration);
     }
+
+    public static
+    void close(RestClientConfiguration configuration) {
+        HttpClientRegistry.close(configuration);
+    }
 }
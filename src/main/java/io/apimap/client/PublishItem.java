@@ -0,0 +1,92 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.api.rest.ApiVersionDataRestEntity;
+import io.apimap.api.rest.MetadataDataRestEntity;
+
+import java.util.Optional;
+
+/**
+ * One API version to publish with {@link BulkPublisher}. The API and the version are created if missing,
+ * the metadata, readme and changelog replace the existing content.
+ */
+public class PublishItem {
+    private final ApiDataRestEntity api;
+    private final ApiVersionDataRestEntity version;
+    private final MetadataDataRestEntity metadata;
+    private String readme;
+    private String changelog;
+    private String apiToken;
+
+    public PublishItem(ApiDataRestEntity api, ApiVersionDataRestEntity version, MetadataDataRestEntity metadata) {
+        this.api = api;
+        this.version = version;
+        this.metadata = metadata;
+    }
+
+    public PublishItem withReadme(String readme) {
+        this.readme = readme;
+        return this;
+    }
+
+    public PublishItem withChangelog(String changelog) {
+        this.changelog = changelog;
+        return this;
+    }
+
+    /**
+     * Token of an already existing API, required to change it. Not needed when the API is created by the publish.
+     */
+    public PublishItem withApiToken(String apiToken) {
+        this.apiToken = apiToken;
+        return this;
+    }
+
+    public ApiDataRestEntity getApi() {
+        return api;
+    }
+
+    public ApiVersionDataRestEntity getVersion() {
+        return version;
+    }
+
+    public MetadataDataRestEntity getMetadata() {
+        return metadata;
+    }
+
+    public Optional<String> getReadme() {
+        return Optional.ofNullable(readme);
+    }
+
+    public Optional<String> getChangelog() {
+        return Optional.ofNullable(changelog);
+    }
+
+    public Optional<String> getApiToken() {
+        return Optional.ofNullable(apiToken);
+    }
+
+    @Override
+    public String toString() {
+        return "PublishItem{" +
+                "api=" + metadata.getName() +
+                ", version=" + metadata.getApiVersion() +
+                '}';
+    }
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.api.rest.MetadataDataRestEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of publishing one {@link PublishItem}, with the errors reported while publishing it.
+ */
+public class PublishResult {
+    private final PublishItem item;
+    private final List<String> errors = new ArrayList<>();
+    private MetadataDataRestEntity metadata;
+    private String createdApiToken;
+
+    public PublishResult(PublishItem item) {
+        this.item = item;
+    }
+
+    public PublishItem getItem() {
+        return item;
+    }
+
+    /**
+     * The metadata stored by the API, empty if the metadata was not published.
+     */
+    public Optional<MetadataDataRestEntity> getMetadata() {
+        return Optional.ofNullable(metadata);
+    }
+
+    protected void setMetadata(MetadataDataRestEntity metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Token of the API if it was created by this publish. Store it, it is required for later changes to the API.
+     */
+    public Optional<String> getCreatedApiToken() {
+        return Optional.ofNullable(createdApiToken);
+    }
+
+    protected void setCreatedApiToken(String createdApiToken) {
+        this.createdApiToken = createdApiToken;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    protected void addError(String error) {
+        errors.add(error);
+    }
+
+    public boolean isSuccessful() {
+        return metadata != null && errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PublishResult{" +
+                "item=" + item +
+                ", successful=" + isSuccessful() +
+                ", errors=" + errors +
+                '}';
+    }
+}
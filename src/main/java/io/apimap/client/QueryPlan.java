@@ -0,0 +1,311 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.client.client.query.CreateResourceQuery;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable chain of traversal steps, built once and executed by many threads with different parameters.
+ *
+ * Keys may contain placeholders like {api}, replaced by the parameters given when the plan is bound to a client.
+ * Every binding returns a new client, so the plan itself holds no per-request state.
+ *
+ * <pre>
+ * QueryPlan plan = QueryPlan.builder()
+ *         .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+ *         .followCollection("{api}", JsonApiRestResponseWrapper.VERSION_COLLECTION)
+ *         .followResource("{version}")
+ *         .followCollection(JsonApiRestResponseWrapper.METADATA_COLLECTION)
+ *         .build();
+ *
+ * plan.client(configuration, parameters).createOrUpdateResource(metadata, ContentType.APPLICATION_JSON);
+ * </pre>
+ */
+public final class QueryPlan {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^{}]+)\\}");
+
+    private final List<Step> steps;
+
+    private enum StepType {
+        COLLECTION,
+        RELATIONSHIP,
+        RESOURCE,
+        CREATE
+    }
+
+    private static final class Step {
+        private final StepType type;
+        private final String key;
+        private final String relationshipId;
+        private final Class<?> resourceClassType;
+        private final Function<Map<String, String>, ?> object;
+        private final Consumer<Object> callback;
+        private final CreateResourceQuery.STRATEGY strategy;
+
+        private Step(StepType type, String key, String relationshipId) {
+            this(type, key, relationshipId, null, null, null, null);
+        }
+
+        private Step(StepType type, String key, String relationshipId, Class<?> resourceClassType, Function<Map<String, String>, ?> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+            this.type = type;
+            this.key = key;
+            this.relationshipId = relationshipId;
+            this.resourceClassType = resourceClassType;
+            this.object = object;
+            this.callback = callback;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + (relationshipId != null ? relationshipId + "/" : "") + key;
+        }
+    }
+
+    /**
+     * The traversal methods of the client a plan is bound to.
+     */
+    private interface Target {
+        void followCollection(String key);
+
+        void followCollection(String relationshipId, String key);
+
+        void followResource(String key);
+
+        void onMissingCreate(String key, Class<Object> resourceClassType, Supplier<Object> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy);
+    }
+
+    /**
+     * Has the traversal and create methods of {@link RestClient}, with placeholders allowed in the keys.
+     */
+    public static final class Builder {
+        private final List<Step> steps = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder followCollection(String key) {
+            steps.add(new Step(StepType.COLLECTION, key, null));
+            return this;
+        }
+
+        public Builder followCollection(String relationshipId, String key) {
+            steps.add(new Step(StepType.RELATIONSHIP, key, relationshipId));
+            return this;
+        }
+
+        public Builder followResource(String key) {
+            steps.add(new Step(StepType.RESOURCE, key, null));
+            return this;
+        }
+
+        public Builder onMissingCreate(String key, Object object, Consumer<Object> callback) {
+            return onMissingCreate(key, object, callback, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+        }
+
+        public Builder onMissingCreate(String key, Object object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+            steps.add(new Step(StepType.CREATE, key, null, object.getClass(), parameters -> object, callback, strategy));
+            return this;
+        }
+
+        /**
+         * Creates the resource with the object of the supplier, which is called only when the resource is missing.
+         */
+        public <T> Builder onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback) {
+            return onMissingCreate(key, resourceClassType, object, callback, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+        }
+
+        public <T> Builder onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+            steps.add(new Step(StepType.CREATE, key, null, resourceClassType, parameters -> object.get(), callback, strategy));
+            return this;
+        }
+
+        /**
+         * Creates the resource from the parameters of the execution, the factory is called only when the resource is missing.
+         * The created resource is read as the class of the object returned by the factory.
+         */
+        public Builder onMissingCreate(String key, Function<Map<String, String>, Object> object, Consumer<Object> callback) {
+            return onMissingCreate(key, object, callback, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+        }
+
+        public Builder onMissingCreate(String key, Function<Map<String, String>, Object> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+            steps.add(new Step(StepType.CREATE, key, null, null, object, callback, strategy));
+            return this;
+        }
+
+        public QueryPlan build() {
+            return new QueryPlan(new ArrayList<>(steps));
+        }
+    }
+
+    private QueryPlan(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A new client with the steps of the plan, with the placeholders replaced by the parameters.
+     */
+    public RestClient client(RestClientConfiguration configuration, Map<String, String> parameters) {
+        return bind(new RestClient(configuration), parameters);
+    }
+
+    public RestClient client(RestClientConfiguration configuration, CloseableHttpClient httpClient, Map<String, String> parameters) {
+        return bind(new RestClient(configuration, httpClient), parameters);
+    }
+
+    private RestClient bind(RestClient client, Map<String, String> parameters) {
+        bind(new Target() {
+            @Override
+            public void followCollection(String key) {
+                client.followCollection(key);
+            }
+
+            @Override
+            public void followCollection(String relationshipId, String key) {
+                client.followCollection(relationshipId, key);
+            }
+
+            @Override
+            public void followResource(String key) {
+                client.followResource(key);
+            }
+
+            @Override
+            public void onMissingCreate(String key, Class<Object> resourceClassType, Supplier<Object> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+                client.onMissingCreate(key, resourceClassType, object, callback, strategy);
+            }
+        }, parameters);
+
+        return client;
+    }
+
+    /**
+     * A new async client with the steps of the plan, with the placeholders replaced by the parameters.
+     */
+    public AsyncRestClient asyncClient(RestClientConfiguration configuration, Map<String, String> parameters) {
+        return bind(new AsyncRestClient(configuration), parameters);
+    }
+
+    public AsyncRestClient asyncClient(RestClientConfiguration configuration, CloseableHttpAsyncClient httpClient, Map<String, String> parameters) {
+        return bind(new AsyncRestClient(configuration, httpClient), parameters);
+    }
+
+    private AsyncRestClient bind(AsyncRestClient client, Map<String, String> parameters) {
+        bind(new Target() {
+            @Override
+            public void followCollection(String key) {
+                client.followCollection(key);
+            }
+
+            @Override
+            public void followCollection(String relationshipId, String key) {
+                client.followCollection(relationshipId, key);
+            }
+
+            @Override
+            public void followResource(String key) {
+                client.followResource(key);
+            }
+
+            @Override
+            public void onMissingCreate(String key, Class<Object> resourceClassType, Supplier<Object> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+                client.onMissingCreate(key, resourceClassType, object, callback, strategy);
+            }
+        }, parameters);
+
+        return client;
+    }
+
+    /**
+     * Adds the steps to the client. The object of a create step is built from the parameters only when the
+     * client creates the resource.
+     */
+    @SuppressWarnings("unchecked")
+    private void bind(Target client, Map<String, String> parameters) {
+        Map<String, String> bound = new HashMap<>(parameters);
+
+        for (Step step : steps) {
+            String key = resolve(step.key, bound);
+
+            switch (step.type) {
+                case COLLECTION:
+                    client.followCollection(key);
+                    break;
+                case RELATIONSHIP:
+                    client.followCollection(resolve(step.relationshipId, bound), key);
+                    break;
+                case RESOURCE:
+                    client.followResource(key);
+                    break;
+                case CREATE:
+                    client.onMissingCreate(key, (Class<Object>) step.resourceClassType, () -> step.object.apply(bound), step.callback, step.strategy);
+                    break;
+            }
+        }
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    private static String resolve(String template, Map<String, String> parameters) {
+        if(template == null || template.indexOf('{') < 0) {
+            return template;
+        }
+
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuffer resolved = new StringBuffer();
+
+        while (matcher.find()) {
+            String value = parameters.get(matcher.group(1));
+
+            if(value == null) {
+                throw new IllegalArgumentException("Missing query plan parameter: " + matcher.group(1));
+            }
+
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+        }
+
+        matcher.appendTail(resolved);
+
+        return resolved.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlan{" +
+                "steps=" + steps +
+                '}';
+    }
+}
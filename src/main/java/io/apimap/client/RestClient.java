@@ -16,25 +16,30 @@ limitations under the License.
 
 package io.apimap.client;
 
+import io.apimap.client.client.AccessToken;
 import io.apimap.client.client.BaseRestClient;
+import io.apimap.client.client.Deadline;
 import io.apimap.client.client.query.CollectionTraversingQuery;
 import io.apimap.client.client.query.CreateResourceQuery;
 import io.apimap.client.client.query.RelationshipTraversingQuery;
 import io.apimap.client.client.query.ResourceTraversingQuery;
 import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.client.exception.ResourceNotFoundException;
 import org.apache.hc.client5.http.classic.methods.HttpDelete;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.HttpHeaders;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class RestClient extends BaseRestClient implements IRestClient {
 
@@ -78,6 +83,28 @@ public class RestClient extends BaseRestClient implements IRestClient {
         return this;
     }
 
+    /**
+     * Like {@link #onMissingCreate(String, Object, Consumer)}, with the strategy used to find out whether the
+     * resource is missing, see {@link CreateResourceQuery.STRATEGY}.
+     */
+    public RestClient onMissingCreate(String key, Object object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+        addApiQuery(new CreateResourceQuery(key, object, callback, ContentType.APPLICATION_JSON, strategy));
+        return this;
+    }
+
+    /**
+     * Like {@link #onMissingCreate(String, Object, Consumer)}, but the object is only built if the resource is
+     * missing. The class is the type of the object, and of the created resource passed to the callback.
+     */
+    public <T> RestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback) {
+        return onMissingCreate(key, resourceClassType, object, callback, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+    }
+
+    public <T> RestClient onMissingCreate(String key, Class<T> resourceClassType, Supplier<? extends T> object, Consumer<Object> callback, CreateResourceQuery.STRATEGY strategy) {
+        addApiQuery(new CreateResourceQuery(key, resourceClassType, object, callback, ContentType.APPLICATION_JSON, strategy));
+        return this;
+    }
+
     public RestClient followCollection(String key) {
         addApiQuery(new CollectionTraversingQuery(key));
         return this;
@@ -88,45 +115,11 @@ public class RestClient extends BaseRestClient implements IRestClient {
             return 204;
         }
 
-        CloseableHttpClient httpClient = defaultCloseableHttpClient(UUID.randomUUID());
-
-        int returnValue = -1;
+        Integer returnValue = performOperation("", (contentURI, jwt, httpClient) ->
+                deleteResource(new HttpDelete(contentURI), httpClient, jwt)
+        );
 
-        try {
-            Optional<Endpoints> endpoints = getEndpoints(httpClient);
-
-            if(!endpoints.isPresent()){
-                this.errorHandler.accept("Unable to get zeroconf");
-                return returnValue;
-            }
-
-            Optional<String> jwt = getJwtToken(httpClient, endpoints.get().getOrchestra());
-
-            if(!jwt.isPresent()){
-                this.errorHandler.accept("Unable to get jwt");
-                return returnValue;
-            }
-
-            Optional<URI> contentURI = performQueries(httpClient, endpoints.get().getApi(), jwt.get());
-
-            if(!contentURI.isPresent()){
-                this.errorHandler.accept("Unable to travers path to resource");
-                return returnValue;
-            }
-
-            HttpDelete request = new HttpDelete(contentURI.get());
-            request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + jwt.get());
-
-            returnValue = deleteResource(request, httpClient);
-        } catch (Exception e) {
-            if(this.errorHandler != null){
-                this.errorHandler.accept(e.getMessage());
-            }
-        } finally {
-            httpClient.close();
-        }
-
-        return returnValue;
+        return returnValue != null ? returnValue : -1;
     }
 
     public <T> T getResource(Class<T> resourceClassType, ContentType contentType) throws IOException, IncorrectTokenException {
@@ -141,45 +134,41 @@ public class RestClient extends BaseRestClient implements IRestClient {
             }
         }
 
-        CloseableHttpClient httpClient = defaultCloseableHttpClient(UUID.randomUUID());
-
-        T returnValue = null;
-
-        try {
-            Optional<Endpoints> endpoints = getEndpoints(httpClient);
-
-            if(!endpoints.isPresent()){
-                this.errorHandler.accept("[GET] Unable to get zeroconf");
-                return returnValue;
-            }
-
-            Optional<String> jwt = getJwtToken(httpClient, endpoints.get().getOrchestra());
-
-            if(!jwt.isPresent()){
-                this.errorHandler.accept("[GET] Unable to get jwt");
-                return returnValue;
-            }
+        return performOperation("[GET] ", (contentURI, jwt, httpClient) ->
+                getResource(new HttpGet(contentURI), resourceClassType, contentType, httpClient, jwt)
+        );
+    }
 
-            Optional<URI> contentURI = performQueries(httpClient, endpoints.get().getApi(), jwt.get());
+    /**
+     * Streams the resource, such as a markdown document, to the target stream as it is received. The body is
+     * copied as is and the stream is left open. Returns the number of bytes written, or -1 if the request failed.
+     */
+    public long getResource(OutputStream target) throws IOException, IncorrectTokenException {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return 0;
+        }
 
-            if(!contentURI.isPresent()){
-                this.errorHandler.accept("[GET] Unable to travers path to resource");
-                return returnValue;
-            }
+        Long returnValue = performOperation("[GET] ", (contentURI, jwt, httpClient) ->
+                getResource(new HttpGet(contentURI), target, httpClient, jwt)
+        );
 
-            HttpGet request = new HttpGet(contentURI.get());
-            request.setHeader("Authorization", "Bearer " + jwt.get());
+        return returnValue != null ? returnValue : -1;
+    }
 
-            returnValue = getResource(request, resourceClassType, contentType, httpClient);
-        } catch (Exception e) {
-            if(this.errorHandler != null){
-                this.errorHandler.accept(e.getMessage());
-            }
-        } finally {
-            httpClient.close();
+    /**
+     * Writes the resource to the file, replacing its content. Returns the number of bytes written, or -1 if the
+     * request failed.
+     */
+    public long getResource(Path target) throws IOException, IncorrectTokenException {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return 0;
         }
 
-        return returnValue;
+        Long returnValue = performOperation("[GET] ", (contentURI, jwt, httpClient) ->
+                getResource(new HttpGet(contentURI), target, httpClient, jwt)
+        );
+
+        return returnValue != null ? returnValue : -1;
     }
 
     public <T> T createResource(T object, ContentType contentType) throws IOException, IncorrectTokenException {
@@ -194,51 +183,73 @@ public class RestClient extends BaseRestClient implements IRestClient {
             }
         }
 
-        CloseableHttpClient httpClient = defaultCloseableHttpClient(UUID.randomUUID());
-
-        T returnValue = null;
-
-        try {
-            Optional<Endpoints> endpoints = getEndpoints(httpClient);
+        return performOperation("[POST] ", (contentURI, jwt, httpClient) ->
+                (T) postResource(new HttpPost(contentURI), object, object.getClass(), contentType, httpClient, jwt)
+        );
+    }
 
-            if(!endpoints.isPresent()){
-                this.errorHandler.accept("[POST] Unable to get zeroconf");
-                return returnValue;
+    public <T> T createOrUpdateResource(T object, ContentType contentType) throws IOException, IncorrectTokenException {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            try {
+                return (T) object.getClass().getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                if(this.errorHandler != null){
+                    this.errorHandler.accept(e.getMessage());
+                }
+                return null;
             }
+        }
 
-            Optional<String> jwt = getJwtToken(httpClient, endpoints.get().getOrchestra());
+        if(configuration.isPresent() && configuration.get().isSkipUnchangedWrites()) {
+            WriteResult<T> result = createOrUpdateResourceIfChanged(object, contentType);
+            return result != null ? result.getResource() : null;
+        }
 
-            if(!jwt.isPresent()){
-                this.errorHandler.accept("[POST] Unable to get jwt");
-                return returnValue;
-            }
+        return performOperation("[PUT] ", (contentURI, jwt, httpClient) ->
+                (T) putResource(new HttpPut(contentURI), object, object.getClass(), contentType, httpClient, jwt)
+        );
+    }
 
-            Optional<URI> contentURI = performQueries(httpClient, endpoints.get().getApi(), jwt.get());
+    /**
+     * Creates the resource with the content of the file, which is streamed from disk. Returns the status code,
+     * or -1 if the request failed.
+     */
+    public int createResource(Path file, ContentType contentType) throws IOException, IncorrectTokenException {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return 201;
+        }
 
-            if(!contentURI.isPresent()){
-                this.errorHandler.accept("[POST] Unable to travers path to resource");
-                return returnValue;
-            }
+        Integer returnValue = performOperation("[POST] ", (contentURI, jwt, httpClient) ->
+                uploadResource(new HttpPost(contentURI), file, contentType, httpClient, jwt)
+        );
 
-            HttpPost request = new HttpPost(contentURI.get());
-            request.setHeader("Authorization", "Bearer " + jwt.get());
+        return returnValue != null ? returnValue : -1;
+    }
 
-            returnValue = (T) postResource(request, object, object.getClass(), contentType, httpClient);
-        } catch (Exception e) {
-            if(this.errorHandler != null){
-                this.errorHandler.accept(e.getMessage());
-            }
-        } finally {
-            httpClient.close();
+    /**
+     * Replaces the resource with the content of the file, which is streamed from disk. Returns the status code,
+     * or -1 if the request failed.
+     */
+    public int createOrUpdateResource(Path file, ContentType contentType) throws IOException, IncorrectTokenException {
+        if(configuration.isPresent() && configuration.get().isDryRunMode()) {
+            return 200;
         }
 
-        return returnValue;
+        Integer returnValue = performOperation("[PUT] ", (contentURI, jwt, httpClient) ->
+                uploadResource(new HttpPut(contentURI), file, contentType, httpClient, jwt)
+        );
+
+        return returnValue != null ? returnValue : -1;
     }
 
-    public <T> T createOrUpdateResource(T object, ContentType contentType) throws IOException, IncorrectTokenException {
+    /**
+     * Like {@link #createOrUpdateResource(Object, ContentType)}, but nothing is sent if the resource was last written
+     * with the same content. The result tells whether the write was sent.
+     */
+    public <T> WriteResult<T> createOrUpdateResourceIfChanged(T object, ContentType contentType) throws IOException, IncorrectTokenException {
         if(configuration.isPresent() && configuration.get().isDryRunMode()) {
             try {
-                return (T) object.getClass().getDeclaredConstructor().newInstance();
+                return WriteResult.skipped((T) object.getClass().getDeclaredConstructor().newInstance());
             } catch (Exception e) {
                 if(this.errorHandler != null){
                     this.errorHandler.accept(e.getMessage());
@@ -247,48 +258,82 @@ public class RestClient extends BaseRestClient implements IRestClient {
             }
         }
 
-        CloseableHttpClient httpClient = defaultCloseableHttpClient(UUID.randomUUID());
+        return performOperation("[PUT] ", (contentURI, jwt, httpClient) ->
+                putResourceIfChanged(new HttpPut(contentURI), object, (Class<T>) object.getClass(), contentType, httpClient, jwt)
+        );
+    }
 
-        T returnValue = null;
+    protected interface Operation<R> {
+        R perform(URI contentURI, AccessToken jwt, CloseableHttpClient httpClient) throws Exception, IncorrectTokenException;
+    }
+
+    /**
+     * Resolves the endpoints, token and path to the resource before performing the operation on it. If the resource
+     * is missing at a cached path the queries are performed again and the operation is retried once. All requests
+     * share the operation timeout of the configuration and one X-Request-Id.
+     */
+    protected <R> R performOperation(String action, Operation<R> operation) throws IncorrectTokenException {
+        // The configuration can't be changed once an operation has used it
+        configuration.ifPresent(RestClientConfiguration::sharedKey);
+        CloseableHttpClient httpClient = defaultCloseableHttpClient();
+        setRequestId(UUID.randomUUID().toString());
+
+        if(configuration.isPresent()) {
+            setDeadline(Deadline.after(configuration.get().getOperationTimeoutMillis()));
+        }
 
         try {
             Optional<Endpoints> endpoints = getEndpoints(httpClient);
 
             if(!endpoints.isPresent()){
-                this.errorHandler.accept("[PUT] Unable to get zeroconf");
-                return returnValue;
+                reportError(action + "Unable to get zeroconf");
+                return null;
             }
 
-            Optional<String> jwt = getJwtToken(httpClient, endpoints.get().getOrchestra());
+            Optional<AccessToken> jwt = getJwtToken(httpClient, endpoints.get().getOrchestra());
 
             if(!jwt.isPresent()){
-                this.errorHandler.accept("[PUT] Unable to get jwt");
-                return returnValue;
+                reportError(action + "Unable to get jwt");
+                return null;
             }
 
             Optional<URI> contentURI = performQueries(httpClient, endpoints.get().getApi(), jwt.get());
 
             if(!contentURI.isPresent()){
-                this.errorHandler.accept("[PUT] Unable to travers path to resource");
-                return returnValue;
+                reportError(action + "Unable to travers path to resource");
+                return null;
             }
 
-            HttpPut request = new HttpPut(contentURI.get());
-            request.setHeader("Authorization", "Bearer " + jwt.get());
-
-            returnValue = (T) putResource(request, object, object.getClass(), contentType, httpClient);
-        } catch (Exception e) {
-            if(configuration.isPresent() && configuration.get().isDryRunMode()) {
-                System.out.println("[PUT] Exception: " + e.getMessage());
+            try {
+                return operation.perform(contentURI.get(), jwt.get(), httpClient);
+            } catch (ResourceNotFoundException e) {
+                if(!invalidateQueries(endpoints.get().getApi())) {
+                    throw e;
+                }
             }
-            if(this.errorHandler != null){
-                this.errorHandler.accept(e.getMessage());
+
+            contentURI = performQueries(httpClient, endpoints.get().getApi(), jwt.get());
+
+            if(!contentURI.isPresent()){
+                reportError(action + "Unable to travers path to resource");
+                return null;
             }
+
+            return operation.perform(contentURI.get(), jwt.get(), httpClient);
+        } catch (Exception e) {
+            reportError(e.getMessage());
         } finally {
-            httpClient.close();
+            setDeadline(null);
+            setRequestId(null);
         }
 
-        return returnValue;
+        return null;
+    }
+
+    protected void reportError(String message) {
+        if(this.errorHandler != null){
+            this.errorHandler.accept(message);
+        }
     }
 
     @Override
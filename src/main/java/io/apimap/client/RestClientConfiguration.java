@@ -17,10 +17,38 @@ limitations under the License.
 package io.apimap.client;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 public class RestClientConfiguration implements Serializable {
     private static final int DEFAULT_CALLSTACK_MAX_DEPTH = 10;
     private static final boolean DEFAULT_LOGGER_ENABLED = false;
+    private static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final long DEFAULT_ENDPOINT_CACHE_TTL_SECONDS = 300;
+    private static final int DEFAULT_PATH_CACHE_SIZE = 1000;
+    private static final long DEFAULT_RESPONSE_CACHE_MAX_BYTES = 8L * 1024 * 1024;
+    private static final boolean DEFAULT_SKIP_UNCHANGED_WRITES = false;
+    private static final String DEFAULT_WRITE_HASH_FILE = null;
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS = 200;
+    private static final long DEFAULT_RETRY_MAX_BACKOFF_MILLIS = 10000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS = 30000;
+    private static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final long DEFAULT_RESPONSE_TIMEOUT_MILLIS = 30000;
+    private static final long DEFAULT_SOCKET_TIMEOUT_MILLIS = 30000;
+    private static final long DEFAULT_OPERATION_TIMEOUT_MILLIS = 0;
+    private static final boolean DEFAULT_HEDGE_REQUESTS = false;
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 0;
+    private static final int DEFAULT_HEDGE_BUDGET_PERCENT = 5;
+    private static final boolean DEFAULT_COMPRESS_REQUESTS = false;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 2048;
+    private static final boolean DEFAULT_DECOMPRESS_RESPONSES = true;
+    private static final long DEFAULT_MAX_RESPONSE_BODY_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_MISSING_CACHE_TTL_MILLIS = 0;
 
     private boolean dryRunMode = false;
     private boolean debugMode = DEFAULT_LOGGER_ENABLED;
@@ -28,9 +56,40 @@ public class RestClientConfiguration implements Serializable {
     private String secret;
     private String account;
     private String zeroconfURL;
+    private String orchestraURL;
+    private String apiURL;
 
     private Integer queryCallstackDepth = DEFAULT_CALLSTACK_MAX_DEPTH;
 
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private final LinkedHashMap<String, Integer> maxConnectionsPerHost = new LinkedHashMap<>();
+
+    private long endpointCacheTtlSeconds = DEFAULT_ENDPOINT_CACHE_TTL_SECONDS;
+    private int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
+    private long responseCacheMaxBytes = DEFAULT_RESPONSE_CACHE_MAX_BYTES;
+    private boolean skipUnchangedWrites = DEFAULT_SKIP_UNCHANGED_WRITES;
+    private String writeHashFile = DEFAULT_WRITE_HASH_FILE;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryInitialBackoffMillis = DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS;
+    private long retryMaxBackoffMillis = DEFAULT_RETRY_MAX_BACKOFF_MILLIS;
+    private int circuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+    private long circuitBreakerOpenMillis = DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS;
+    private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private long responseTimeoutMillis = DEFAULT_RESPONSE_TIMEOUT_MILLIS;
+    private long socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+    private long operationTimeoutMillis = DEFAULT_OPERATION_TIMEOUT_MILLIS;
+    private boolean hedgeRequests = DEFAULT_HEDGE_REQUESTS;
+    private long hedgeDelayMillis = DEFAULT_HEDGE_DELAY_MILLIS;
+    private int hedgeBudgetPercent = DEFAULT_HEDGE_BUDGET_PERCENT;
+    private boolean compressRequests = DEFAULT_COMPRESS_REQUESTS;
+    private int compressionThresholdBytes = DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+    private boolean decompressResponses = DEFAULT_DECOMPRESS_RESPONSES;
+    private long maxResponseBodyBytes = DEFAULT_MAX_RESPONSE_BODY_BYTES;
+    private long missingCacheTtlMillis = DEFAULT_MISSING_CACHE_TTL_MILLIS;
+
+    private transient volatile boolean frozen;
+
     public RestClientConfiguration() {
     }
 
@@ -71,6 +130,7 @@ public class RestClientConfiguration implements Serializable {
     }
 
     public void setDryRunMode(boolean dryRunMode) {
+        checkMutable();
         this.dryRunMode = dryRunMode;
     }
 
@@ -79,6 +139,7 @@ public class RestClientConfiguration implements Serializable {
     }
 
     public void setDebugMode(boolean debugMode) {
+        checkMutable();
         this.debugMode = debugMode;
     }
 
@@ -90,11 +151,16 @@ public class RestClientConfiguration implements Serializable {
         return zeroconfURL;
     }
 
+    /**
+     * @deprecated traversal is no longer limited by depth, the value is ignored
+     */
+    @Deprecated
     public Integer getQueryCallstackDepth() {
         return queryCallstackDepth;
     }
 
     public void setSecret(String secret) {
+        checkMutable();
         this.secret = secret;
     }
 
@@ -103,13 +169,372 @@ public class RestClientConfiguration implements Serializable {
     }
 
     public void setAccount(String account) {
+        checkMutable();
         this.account = account;
     }
 
     public void setZeroconfURL(String zeroconfURL) {
+        checkMutable();
         this.zeroconfURL = zeroconfURL;
     }
 
+    public String getOrchestraURL() {
+        return orchestraURL;
+    }
+
+    public void setOrchestraURL(String orchestraURL) {
+        checkMutable();
+        this.orchestraURL = orchestraURL;
+    }
+
+    public String getApiURL() {
+        return apiURL;
+    }
+
+    public void setApiURL(String apiURL) {
+        checkMutable();
+        this.apiURL = apiURL;
+    }
+
+    public boolean hasStaticEndpoints() {
+        return orchestraURL != null && apiURL != null;
+    }
+
+    public long getEndpointCacheTtlSeconds() {
+        return endpointCacheTtlSeconds;
+    }
+
+    public void setEndpointCacheTtlSeconds(long endpointCacheTtlSeconds) {
+        checkMutable();
+        this.endpointCacheTtlSeconds = endpointCacheTtlSeconds;
+    }
+
+    public int getPathCacheSize() {
+        return pathCacheSize;
+    }
+
+    public void setPathCacheSize(int pathCacheSize) {
+        checkMutable();
+        this.pathCacheSize = pathCacheSize;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        checkMutable();
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        checkMutable();
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * The connection limits set for single hosts, keyed by the url of the host.
+     */
+    public Map<String, Integer> getMaxConnectionsPerHost() {
+        return Collections.unmodifiableMap(maxConnectionsPerHost);
+    }
+
+    /**
+     * Limits the connections to the host of the url, such as the zeroconf, orchestra or API url, instead of
+     * {@link #getMaxConnectionsPerRoute()}. The scheme and port of the url are part of the route.
+     */
+    public void setMaxConnectionsPerHost(String url, int maxConnections) {
+        checkMutable();
+        this.maxConnectionsPerHost.put(url, maxConnections);
+    }
+
+    public long getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    public void setResponseCacheMaxBytes(long responseCacheMaxBytes) {
+        checkMutable();
+        this.responseCacheMaxBytes = responseCacheMaxBytes;
+    }
+
+    public boolean isSkipUnchangedWrites() {
+        return skipUnchangedWrites;
+    }
+
+    public void setSkipUnchangedWrites(boolean skipUnchangedWrites) {
+        checkMutable();
+        this.skipUnchangedWrites = skipUnchangedWrites;
+    }
+
+    public String getWriteHashFile() {
+        return writeHashFile;
+    }
+
+    public void setWriteHashFile(String writeHashFile) {
+        checkMutable();
+        this.writeHashFile = writeHashFile;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        checkMutable();
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryInitialBackoffMillis() {
+        return retryInitialBackoffMillis;
+    }
+
+    public void setRetryInitialBackoffMillis(long retryInitialBackoffMillis) {
+        checkMutable();
+        this.retryInitialBackoffMillis = retryInitialBackoffMillis;
+    }
+
+    public long getRetryMaxBackoffMillis() {
+        return retryMaxBackoffMillis;
+    }
+
+    public void setRetryMaxBackoffMillis(long retryMaxBackoffMillis) {
+        checkMutable();
+        this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        checkMutable();
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    public void setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+        checkMutable();
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        checkMutable();
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public long getResponseTimeoutMillis() {
+        return responseTimeoutMillis;
+    }
+
+    public void setResponseTimeoutMillis(long responseTimeoutMillis) {
+        checkMutable();
+        this.responseTimeoutMillis = responseTimeoutMillis;
+    }
+
+    public long getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(long socketTimeoutMillis) {
+        checkMutable();
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public long getOperationTimeoutMillis() {
+        return operationTimeoutMillis;
+    }
+
+    public void setOperationTimeoutMillis(long operationTimeoutMillis) {
+        checkMutable();
+        this.operationTimeoutMillis = operationTimeoutMillis;
+    }
+
+    public boolean isHedgeRequests() {
+        return hedgeRequests;
+    }
+
+    public void setHedgeRequests(boolean hedgeRequests) {
+        checkMutable();
+        this.hedgeRequests = hedgeRequests;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        checkMutable();
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    public int getHedgeBudgetPercent() {
+        return hedgeBudgetPercent;
+    }
+
+    public void setHedgeBudgetPercent(int hedgeBudgetPercent) {
+        checkMutable();
+        this.hedgeBudgetPercent = hedgeBudgetPercent;
+    }
+
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    public void setCompressRequests(boolean compressRequests) {
+        checkMutable();
+        this.compressRequests = compressRequests;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        checkMutable();
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    public boolean isDecompressResponses() {
+        return decompressResponses;
+    }
+
+    public void setDecompressResponses(boolean decompressResponses) {
+        checkMutable();
+        this.decompressResponses = decompressResponses;
+    }
+
+    public long getMaxResponseBodyBytes() {
+        return maxResponseBodyBytes;
+    }
+
+    public void setMaxResponseBodyBytes(long maxResponseBodyBytes) {
+        checkMutable();
+        this.maxResponseBodyBytes = maxResponseBodyBytes;
+    }
+
+    public long getMissingCacheTtlMillis() {
+        return missingCacheTtlMillis;
+    }
+
+    public void setMissingCacheTtlMillis(long missingCacheTtlMillis) {
+        checkMutable();
+        this.missingCacheTtlMillis = missingCacheTtlMillis;
+    }
+
+    /**
+     * Freezes the configuration and returns it. The pooled http clients and the caches shared by equal
+     * configurations are keyed by it, and every component reads its settings from it, so once it has been used
+     * the setters throw {@link IllegalStateException} instead of changing only some of them. Create a new
+     * configuration to use other settings.
+     */
+    public RestClientConfiguration sharedKey() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * True once the configuration has been used by a client and can no longer be changed.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkMutable() {
+        if(frozen) {
+            throw new IllegalStateException("The configuration is in use by a client and can't be changed, create a new configuration instead");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RestClientConfiguration that = (RestClientConfiguration) o;
+        return dryRunMode == that.dryRunMode
+            && debugMode == that.debugMode
+            && maxConnectionsTotal == that.maxConnectionsTotal
+            && maxConnectionsPerRoute == that.maxConnectionsPerRoute
+            && endpointCacheTtlSeconds == that.endpointCacheTtlSeconds
+            && pathCacheSize == that.pathCacheSize
+            && responseCacheMaxBytes == that.responseCacheMaxBytes
+            && skipUnchangedWrites == that.skipUnchangedWrites
+            && maxRetries == that.maxRetries
+            && retryInitialBackoffMillis == that.retryInitialBackoffMillis
+            && retryMaxBackoffMillis == that.retryMaxBackoffMillis
+            && circuitBreakerFailureThreshold == that.circuitBreakerFailureThreshold
+            && circuitBreakerOpenMillis == that.circuitBreakerOpenMillis
+            && connectTimeoutMillis == that.connectTimeoutMillis
+            && responseTimeoutMillis == that.responseTimeoutMillis
+            && socketTimeoutMillis == that.socketTimeoutMillis
+            && operationTimeoutMillis == that.operationTimeoutMillis
+            && hedgeRequests == that.hedgeRequests
+            && hedgeDelayMillis == that.hedgeDelayMillis
+            && hedgeBudgetPercent == that.hedgeBudgetPercent
+            && compressRequests == that.compressRequests
+            && compressionThresholdBytes == that.compressionThresholdBytes
+            && decompressResponses == that.decompressResponses
+            && maxResponseBodyBytes == that.maxResponseBodyBytes
+            && missingCacheTtlMillis == that.missingCacheTtlMillis
+            && Objects.equals(secret, that.secret)
+            && Objects.equals(account, that.account)
+            && Objects.equals(zeroconfURL, that.zeroconfURL)
+            && Objects.equals(orchestraURL, that.orchestraURL)
+            && Objects.equals(apiURL, that.apiURL)
+            && Objects.equals(queryCallstackDepth, that.queryCallstackDepth)
+            && Objects.equals(writeHashFile, that.writeHashFile)
+            && Objects.equals(maxConnectionsPerHost, that.maxConnectionsPerHost);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            dryRunMode,
+            debugMode,
+            secret,
+            account,
+            zeroconfURL,
+            orchestraURL,
+            apiURL,
+            queryCallstackDepth,
+            maxConnectionsTotal,
+            maxConnectionsPerRoute,
+            maxConnectionsPerHost,
+            endpointCacheTtlSeconds,
+            pathCacheSize,
+            responseCacheMaxBytes,
+            skipUnchangedWrites,
+            writeHashFile,
+            maxRetries,
+            retryInitialBackoffMillis,
+            retryMaxBackoffMillis,
+            circuitBreakerFailureThreshold,
+            circuitBreakerOpenMillis,
+            connectTimeoutMillis,
+            responseTimeoutMillis,
+            socketTimeoutMillis,
+            operationTimeoutMillis,
+            hedgeRequests,
+            hedgeDelayMillis,
+            hedgeBudgetPercent,
+            compressRequests,
+            compressionThresholdBytes,
+            decompressResponses,
+            maxResponseBodyBytes,
+            missingCacheTtlMillis
+        );
+    }
+
     @Override
     public String toString() {
         return "RestClientConfiguration{" +
@@ -118,7 +543,34 @@ public class RestClientConfiguration implements Serializable {
             ", secret='" + secret + '\'' +
             ", account='" + account + '\'' +
             ", zeroconfURL='" + zeroconfURL + '\'' +
+            ", orchestraURL='" + orchestraURL + '\'' +
+            ", apiURL='" + apiURL + '\'' +
             ", queryCallstackDepth=" + queryCallstackDepth +
+            ", maxConnectionsTotal=" + maxConnectionsTotal +
+            ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+            ", maxConnectionsPerHost=" + maxConnectionsPerHost +
+            ", endpointCacheTtlSeconds=" + endpointCacheTtlSeconds +
+            ", pathCacheSize=" + pathCacheSize +
+            ", responseCacheMaxBytes=" + responseCacheMaxBytes +
+            ", skipUnchangedWrites=" + skipUnchangedWrites +
+            ", writeHashFile=" + writeHashFile +
+            ", maxRetries=" + maxRetries +
+            ", retryInitialBackoffMillis=" + retryInitialBackoffMillis +
+            ", retryMaxBackoffMillis=" + retryMaxBackoffMillis +
+            ", circuitBreakerFailureThreshold=" + circuitBreakerFailureThreshold +
+            ", circuitBreakerOpenMillis=" + circuitBreakerOpenMillis +
+            ", connectTimeoutMillis=" + connectTimeoutMillis +
+            ", responseTimeoutMillis=" + responseTimeoutMillis +
+            ", socketTimeoutMillis=" + socketTimeoutMillis +
+            ", operationTimeoutMillis=" + operationTimeoutMillis +
+            ", hedgeRequests=" + hedgeRequests +
+            ", hedgeDelayMillis=" + hedgeDelayMillis +
+            ", hedgeBudgetPercent=" + hedgeBudgetPercent +
+            ", compressRequests=" + compressRequests +
+            ", compressionThresholdBytes=" + compressionThresholdBytes +
+            ", decompressResponses=" + decompressResponses +
+            ", maxResponseBodyBytes=" + maxResponseBodyBytes +
+            ", missingCacheTtlMillis=" + missingCacheTtlMillis +
             '}';
     }
 }
@@ -0,0 +1,184 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+import io.apimap.client.exception.IncorrectTokenException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many RestClient chains concurrently, with at most a fixed number of chains in flight at a time.
+ *
+ * In virtual thread mode each chain runs on its own virtual thread, so a chain waiting for a response does not
+ * hold a platform thread. Chains over the concurrency limit wait for a permit on their virtual thread instead of in
+ * a queue. On a JVM without virtual threads (before Java 21) the executor falls back to a platform thread pool of
+ * the same size, see {@link #isVirtual()}.
+ *
+ * The library code on the request path (client registry, token, endpoint, path, listing and response caches,
+ * circuit breakers and hedge policies) has no synchronized blocks, it only blocks on java.util.concurrent locks,
+ * which release the carrier thread while waiting. The connection pool uses the strict policy of httpclient5,
+ * which leases connections under a ReentrantLock. The shared registries are ConcurrentHashMaps, which hold a
+ * monitor only while the entry for a new configuration is created. The only I/O done that way is the first read
+ * of a write hash file. Code outside the library, such as a callback passed to onMissingCreate, is not covered.
+ * Virtual threads need a Java 21+ runtime, the library itself is built for Java 8.
+ */
+public final class RestClientExecutor implements AutoCloseable {
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    public interface Task<T> {
+        T perform() throws IOException, IncorrectTokenException;
+    }
+
+    private RestClientExecutor(ExecutorService executor, int maxConcurrency, boolean virtual) {
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency);
+        this.virtual = virtual;
+    }
+
+    /**
+     * Runs each chain on a virtual thread, with at most maxConcurrency chains in flight.
+     */
+    public static RestClientExecutor virtualThreads(int maxConcurrency) {
+        requirePositive(maxConcurrency);
+
+        ExecutorService executor = newVirtualThreadExecutor();
+        if(executor == null) {
+            return platformThreads(maxConcurrency);
+        }
+
+        return new RestClientExecutor(executor, maxConcurrency, true);
+    }
+
+    /**
+     * Runs chains on virtual threads, limited to the connection pool size of the configuration.
+     * More chains than pooled connections would only wait for a connection lease.
+     */
+    public static RestClientExecutor virtualThreads(RestClientConfiguration configuration) {
+        return virtualThreads(configuration.getMaxConnectionsTotal());
+    }
+
+    /**
+     * Runs chains on a fixed pool of platform threads.
+     */
+    public static RestClientExecutor platformThreads(int threads) {
+        requirePositive(threads);
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "apimap-rest-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return new RestClientExecutor(Executors.newFixedThreadPool(threads, threadFactory), threads, false);
+    }
+
+    /**
+     * True if chains run on virtual threads, false if the executor fell back to platform threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Schedules the chain and returns its result. Exceptions thrown by the chain complete the future exceptionally.
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return;
+            }
+
+            try {
+                future.complete(task.perform());
+            } catch (Exception | IncorrectTokenException e) {
+                future.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Stops accepting chains and waits for the submitted chains to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void requirePositive(int value) {
+        if(value <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive, was " + value);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if(NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RestClientExecutor{" +
+                "virtual=" + virtual +
+                ", availablePermits=" + permits.availablePermits() +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client;
+
+/**
+ * Outcome of {@link RestClient#createOrUpdateResourceIfChanged(Object, org.apache.hc.core5.http.ContentType)}.
+ *
+ * A skipped write was not sent because the body equals the one last written to the same resource. The resource
+ * of a skipped write is the object passed in, since nothing was returned by the server.
+ */
+public class WriteResult<T> {
+    private final T resource;
+    private final boolean sent;
+
+    protected WriteResult(T resource, boolean sent) {
+        this.resource = resource;
+        this.sent = sent;
+    }
+
+    public static <T> WriteResult<T> sent(T resource) {
+        return new WriteResult<>(resource, true);
+    }
+
+    public static <T> WriteResult<T> skipped(T resource) {
+        return new WriteResult<>(resource, false);
+    }
+
+    public T getResource() {
+        return resource;
+    }
+
+    public boolean isSent() {
+        return sent;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteResult{" +
+                "resource=" + resource +
+                ", sent=" + sent +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+/**
+ * The JWT used by a single operation. The value is replaced if the token is rejected and renewed during the operation.
+ */
+public class AccessToken {
+    private final String url;
+    private volatile String value;
+
+    public AccessToken(String url, String value) {
+        this.url = url;
+        this.value = value;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String bearer() {
+        return "Bearer " + value;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessToken{" +
+                "url='" + url + '\'' +
+                '}';
+    }
+}
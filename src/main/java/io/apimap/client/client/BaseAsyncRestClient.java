@@ -0,0 +1,618 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.query.ApiQuery;
+import io.apimap.client.client.query.CreateResourceQuery;
+import io.apimap.client.client.query.RelationshipTraversingQuery;
+import io.apimap.client.exception.ApiRequestFailedException;
+import io.apimap.client.exception.IllegalApiContentException;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.client.exception.MissingAccessTokenException;
+import io.apimap.client.exception.ResourceConflictException;
+import io.apimap.client.exception.ResourceNotFoundException;
+import io.apimap.oauth.TokenSuccessfulResponse;
+import io.apimap.orchestra.rest.ZeroconfConfigurationResponse;
+import io.apimap.rest.jsonapi.JsonApiRestRequestWrapper;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking counterpart of {@link BaseRestClient}, running on the httpclient5 async client.
+ *
+ * Every hop of the traversal is chained as a continuation on the previous response, so no thread is held while
+ * a request is in flight. Endpoints, tokens and resolved paths are shared with the blocking client, and the
+ * connect, response and socket timeouts and the maximum response body size of the configuration apply to both.
+ *
+ * The policies that block a thread are only applied by the blocking client: retries and the circuit breaker, the
+ * operation timeout, hedging, the response cache, skipping unchanged writes and the missing resource cache. Use
+ * {@link BaseRestClient} on a {@link io.apimap.client.RestClientExecutor} when those are needed.
+ */
+public class BaseAsyncRestClient {
+    protected Optional<RestClientConfiguration> configuration;
+
+    protected CloseableHttpAsyncClient httpClient;
+
+    protected ArrayList<ApiQuery> queries = new ArrayList<>();
+    protected Optional<String> apiToken = Optional.empty();
+
+    protected interface ResponseHandler<T> {
+        T handle(SimpleHttpResponse response) throws Exception, IncorrectTokenException;
+    }
+
+    @SuppressFBWarnings
+    public BaseAsyncRestClient(RestClientConfiguration configuration) {
+        this.configuration = Optional.ofNullable(configuration);
+    }
+
+    @SuppressFBWarnings
+    public BaseAsyncRestClient(RestClientConfiguration configuration, CloseableHttpAsyncClient httpClient) {
+        this.configuration = Optional.ofNullable(configuration);
+        this.httpClient = httpClient;
+    }
+
+    public void setApiToken(String apiToken) {
+        this.apiToken = Optional.ofNullable(apiToken);
+    }
+
+    protected void addApiQuery(ApiQuery query) {
+        queries.add(query);
+    }
+
+    /**
+     * Returns the injected async client, or the started async client shared by all clients with an equal configuration.
+     */
+    protected CloseableHttpAsyncClient defaultCloseableHttpAsyncClient() {
+        if(this.httpClient != null) return this.httpClient;
+
+        return HttpClientRegistry.getAsyncClient(configuration.orElse(null));
+    }
+
+    protected boolean isDebugMode() {
+        return configuration.isPresent() && configuration.get().isDebugMode();
+    }
+
+    protected static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    protected static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * Executes the request. Unless the configuration disables it, gzip responses are accepted and decompressed,
+     * which the async client does not do by itself. Bodies larger than the maximum of the configuration fail with
+     * {@link io.apimap.client.exception.ResponseTooLargeException}, before or after decompression.
+     */
+    protected CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request, CloseableHttpAsyncClient client) {
+        CompletableFuture<SimpleHttpResponse> future = new CompletableFuture<>();
+        boolean decompress = !configuration.isPresent() || configuration.get().isDecompressResponses();
+
+        if(decompress && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, Compression.GZIP);
+        }
+
+        long maxBytes = maxResponseBodyBytes();
+
+        client.execute(SimpleRequestProducer.create(request), new LimitedResponseConsumer(maxBytes), new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                if(decompress && response != null && response.getBodyBytes() != null && Compression.isGzip(response.getFirstHeader(HttpHeaders.CONTENT_ENCODING))) {
+                    try {
+                        response.setBody(Compression.gunzip(response.getBodyBytes(), maxBytes), response.getContentType());
+                        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+                    } catch (IOException e) {
+                        future.completeExceptionally(e);
+                        return;
+                    }
+                }
+
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * The largest response body received into memory. Without a configuration there is no limit.
+     */
+    protected long maxResponseBodyBytes() {
+        return configuration.isPresent() ? configuration.get().getMaxResponseBodyBytes() : 0;
+    }
+
+    /**
+     * Executes the request with the bearer token, renewing the token and resending once if it is rejected with 401.
+     */
+    protected CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request, AccessToken jwt, CloseableHttpAsyncClient client) {
+        request.setHeader(HttpHeaders.AUTHORIZATION, jwt.bearer());
+
+        return execute(request, client).thenCompose(response -> {
+            if(response.getCode() != HttpStatus.SC_UNAUTHORIZED) {
+                return CompletableFuture.completedFuture(response);
+            }
+
+            return renewJwtToken(client, jwt).thenCompose(renewed -> {
+                request.setHeader(HttpHeaders.AUTHORIZATION, jwt.bearer());
+                return execute(request, client);
+            });
+        });
+    }
+
+    /**
+     * Applies the handler to the response, completing the returned future exceptionally if it throws.
+     */
+    protected <T> CompletableFuture<T> handle(CompletableFuture<SimpleHttpResponse> response, ResponseHandler<T> handler) {
+        return response.thenCompose(value -> {
+            try {
+                return CompletableFuture.completedFuture(handler.handle(value));
+            } catch (Exception | IncorrectTokenException e) {
+                return failedFuture(e);
+            }
+        });
+    }
+
+    protected CompletableFuture<BaseRestClient.Endpoints> getEndpoints(CloseableHttpAsyncClient client) {
+        if(configuration.isPresent() && configuration.get().hasStaticEndpoints()){
+            return CompletableFuture.completedFuture(new BaseRestClient.Endpoints(
+                configuration.get().getOrchestraURL(),
+                configuration.get().getApiURL()
+            ));
+        }
+
+        if(!configuration.isPresent() || configuration.get().getZeroconfURL() == null){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return EndpointCache.getAsync(
+            configuration.get().getZeroconfURL(),
+            configuration.get().getEndpointCacheTtlSeconds(),
+            () -> requestEndpoints(client)
+        );
+    }
+
+    protected CompletableFuture<BaseRestClient.Endpoints> requestEndpoints(CloseableHttpAsyncClient client) {
+        if(isDebugMode()){
+            System.out.println("[ZEROCONF] Requesting endpoints from: " + configuration.get().getZeroconfURL());
+        }
+
+        return handle(execute(SimpleRequestBuilder.get(configuration.get().getZeroconfURL()).build(), client), response -> {
+            ZeroconfConfigurationResponse configurationResponse = JsonCodec.reader(ZeroconfConfigurationResponse.class).readValue(response.getBodyBytes());
+
+            return new BaseRestClient.Endpoints(
+                configurationResponse.getEndpoint().getOrchestra(),
+                configurationResponse.getEndpoint().getApi()
+            );
+        });
+    }
+
+    protected CompletableFuture<AccessToken> getJwtToken(CloseableHttpAsyncClient client, String url) {
+        if(url == null){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return TokenCache.getAsync(TokenCache.key(url, configuration.orElse(null)), () -> requestJwtToken(client, url))
+                .thenApply(value -> new AccessToken(url, value));
+    }
+
+    protected CompletableFuture<Void> renewJwtToken(CloseableHttpAsyncClient client, AccessToken jwt) {
+        if(isDebugMode()){
+            System.out.println("[JWT] Token rejected, renewing from endpoint : " + jwt.getUrl());
+        }
+
+        String key = TokenCache.key(jwt.getUrl(), configuration.orElse(null));
+        TokenCache.invalidate(key, jwt.getValue());
+
+        return TokenCache.getAsync(key, () -> requestJwtToken(client, jwt.getUrl()))
+                .thenAccept(jwt::setValue);
+    }
+
+    protected CompletableFuture<TokenCache.Token> requestJwtToken(CloseableHttpAsyncClient client, String url) {
+        String tokenURL = url + "?client_id=" + this.configuration.get().getAccount() + "&client_secret=" + this.configuration.get().getSecret();
+
+        return handle(execute(SimpleRequestBuilder.post(tokenURL).build(), client), response -> {
+            JsonNode tokenNode = JsonCodec.objectMapper().readTree(response.getBodyBytes());
+            TokenSuccessfulResponse tokenResponse = tokenNode != null ? JsonCodec.objectMapper().treeToValue(tokenNode, TokenSuccessfulResponse.class) : null;
+
+            if(tokenResponse == null || tokenResponse.getAccessToken() == null) {
+                throw new MissingAccessTokenException("Missing access token, client not authorized.");
+            }
+
+            return new TokenCache.Token(
+                tokenResponse.getAccessToken(),
+                TokenCache.expiresAt(tokenResponse.getAccessToken(), tokenNode, JsonCodec.objectMapper())
+            );
+        });
+    }
+
+    protected CompletableFuture<URI> performQueries(CloseableHttpAsyncClient client, String url, AccessToken jwt) {
+        if(!configuration.isPresent()){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        boolean pathCacheEnabled = configuration.get().getPathCacheSize() > 0;
+        String pathKey = PathCache.key(url, queries);
+
+        if(pathCacheEnabled) {
+            URI cachedURI = PathCache.forConfiguration(configuration.get()).get(pathKey);
+            if(cachedURI != null) {
+                return CompletableFuture.completedFuture(cachedURI);
+            }
+        }
+
+        return enumerateQueries(URI.create(url), jwt, queries.toArray(new ApiQuery[0]), 0, -1, client).thenApply(contentURI -> {
+            if(pathCacheEnabled && contentURI != null) {
+                PathCache.forConfiguration(configuration.get()).put(pathKey, contentURI);
+            }
+            return contentURI;
+        });
+    }
+
+    protected boolean invalidateQueries(String url) {
+        if(!configuration.isPresent() || configuration.get().getPathCacheSize() <= 0){
+            return false;
+        }
+
+        return PathCache.forConfiguration(configuration.get()).remove(PathCache.key(url, queries));
+    }
+
+    /**
+     * Resolves the query at the index against the uri and continues with the next query once the response arrives.
+     * The index of the last hop a resource was created for is passed on, a hop still missing after the create fails
+     * the traversal. A hop followed by a {@link CreateResourceQuery.STRATEGY#CREATE_FIRST} create is created before
+     * it is read.
+     */
+    protected CompletableFuture<URI> enumerateQueries(URI uri, AccessToken jwt, ApiQuery[] chain, int index, int createdAt, CloseableHttpAsyncClient client) {
+        if(index >= chain.length) {
+            if(isDebugMode()){ System.out.println("[ENUMERATING] Last query reached, returning url " + uri); }
+            return CompletableFuture.completedFuture(uri);
+        }
+
+        ApiQuery query = chain[index];
+
+        if(query.getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
+            return enumerateQueries(uri, jwt, chain, index + 1, createdAt, client);
+        }
+
+        if(createdAt != index
+                && index + 1 < chain.length
+                && chain[index + 1].getType() == ApiQuery.TYPE.CREATE_RESOURCE
+                && ((CreateResourceQuery) chain[index + 1]).getStrategy() == CreateResourceQuery.STRATEGY.CREATE_FIRST) {
+            return createResource(uri, jwt, chain, index, client);
+        }
+
+        return handle(execute(SimpleRequestBuilder.get(uri).build(), jwt, client), response -> {
+            if(response.getCode() < 200 || response.getCode() > 299 || response.getBodyBytes() == null) {
+                if(isDebugMode()){ System.out.println("[ENUMERATING] Response returned unusable response"); }
+                return null;
+            }
+
+            try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(response.getBodyBytes())) {
+                return query.urlFromStream(parser);
+            }
+        }).thenCompose(url -> {
+            if(url != null) {
+                return enumerateQueries(URI.create(url), jwt, chain, index + 1, createdAt, client);
+            }
+
+            if(createdAt != index && index + 1 < chain.length && chain[index + 1].getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
+                return createResource(uri, jwt, chain, index, client);
+            }
+
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Creates the missing resource described by the query following the index, then continues the traversal.
+     * If the resource already exists the hop is read, without creating it again.
+     */
+    protected CompletableFuture<URI> createResource(URI uri, AccessToken jwt, ApiQuery[] chain, int index, CloseableHttpAsyncClient client) {
+        CreateResourceQuery createQuery = (CreateResourceQuery) chain[index + 1];
+
+        Object object = createQuery.getObject();
+
+        if(object == null) {
+            return failedFuture(new IllegalApiContentException(String.format(
+                    "[ENUMERATING] No object to create, Query: %s, URL: %s",
+                    chain[index],
+                    uri
+            )));
+        }
+
+        Class<?> resourceClassType = createQuery.getResourceClassType(object);
+
+        return postResource(uri, object, resourceClassType, createQuery.getContentType(), chain[index], jwt, client).handle((created, error) -> {
+            if(error != null && unwrap(error) instanceof ResourceConflictException) {
+                if(isDebugMode()){ System.out.println("[ENUMERATING] Resource already exists, running query " + chain[index]); }
+                return enumerateQueries(uri, jwt, chain, index, index, client);
+            }
+
+            if(error != null) {
+                return BaseAsyncRestClient.<URI>failedFuture(unwrap(error));
+            }
+
+            Object content = created != null ? created.getContent() : null;
+
+            if(content == null) {
+                return BaseAsyncRestClient.<URI>failedFuture(new ApiRequestFailedException(String.format(
+                        "[ENUMERATING] Created resource unreadable, Query: %s, URL: %s",
+                        chain[index],
+                        uri
+                )));
+            }
+
+            if(content instanceof ApiDataRestEntity && ((ApiDataRestEntity) content).getMeta() != null) {
+                // Store api key
+                this.setApiToken(((ApiDataRestEntity) content).getMeta().getToken());
+            }
+
+            if(createQuery.getCallback() != null) {
+                createQuery.getCallback().accept(content);
+            }
+
+            String url = created.getLink();
+
+            if(url == null && chain[index].getType() == ApiQuery.TYPE.RELATIONSHIP_TRAVERSING && content instanceof ApiDataRestEntity) {
+                url = ((RelationshipTraversingQuery) chain[index]).urlFromEntity(((ApiDataRestEntity) content).getRelationships());
+            }
+
+            // Continue from the created resource instead of reading the hop again
+            if(url != null) {
+                return enumerateQueries(URI.create(url), jwt, chain, index + 1, index, client);
+            }
+
+            return enumerateQueries(uri, jwt, chain, index, index, client);
+        }).thenCompose(next -> next);
+    }
+
+    protected CompletableFuture<Integer> deleteResource(URI uri, AccessToken jwt, CloseableHttpAsyncClient client) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.delete(uri);
+        addApiTokenHeader(builder);
+
+        return handle(execute(builder.build(), jwt, client), response -> {
+            checkResourceFound(response, "[DELETE]", uri);
+
+            if(response.getCode() == HttpStatus.SC_UNAUTHORIZED){
+                throw new IncorrectTokenException("Missing API token");
+            }
+
+            if(response.getCode() < 200 || response.getCode() > 299){
+                throw new ApiRequestFailedException(String.format(
+                        "[DELETE] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        response.getBodyText(),
+                        uri.toString()
+                ));
+            }
+
+            return response.getCode();
+        });
+    }
+
+    protected <T> CompletableFuture<T> getResource(URI uri, Class<T> resourceClassType, ContentType contentType, AccessToken jwt, CloseableHttpAsyncClient client) {
+        return handle(execute(SimpleRequestBuilder.get(uri).build(), jwt, client), response -> {
+            checkResourceFound(response, "[GET]", uri);
+            return responseResourceObject(response, resourceClassType, contentType);
+        });
+    }
+
+    protected <T> CompletableFuture<T> putResource(URI uri, Object content, Class<T> resourceClassType, ContentType contentType, AccessToken jwt, CloseableHttpAsyncClient client) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.put(uri);
+
+        try {
+            setBody(builder, content, contentType);
+        } catch (IOException e) {
+            return failedFuture(new ApiRequestFailedException(e.getMessage()));
+        }
+
+        addApiTokenHeader(builder);
+
+        return handle(execute(builder.build(), jwt, client), response -> {
+            checkResourceFound(response, "[PUT]", uri);
+
+            if(response.getCode() < 200 || response.getCode() > 299){
+                throw new ApiRequestFailedException(String.format(
+                        "[PUT] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        response.getBodyText(),
+                        uri.toString()
+                ));
+            }
+
+            return responseResourceObject(response, resourceClassType, contentType);
+        });
+    }
+
+    protected <T> CompletableFuture<T> postResource(URI uri, Object content, Class<T> resourceClassType, ContentType contentType, AccessToken jwt, CloseableHttpAsyncClient client) {
+        return postResource(uri, content, resourceClassType, contentType, null, jwt, client).thenApply(CreatedResource::getContent);
+    }
+
+    /**
+     * Posts the content. If the post creates the resource the query was looking for, the url the query continues
+     * from is read from the same response.
+     */
+    private <T> CompletableFuture<CreatedResource<T>> postResource(URI uri, Object content, Class<T> resourceClassType, ContentType contentType, ApiQuery query, AccessToken jwt, CloseableHttpAsyncClient client) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.post(uri);
+
+        try {
+            setBody(builder, content, contentType);
+        } catch (IOException e) {
+            return failedFuture(new ApiRequestFailedException(e.getMessage()));
+        }
+
+        addApiTokenHeader(builder);
+
+        return handle(execute(builder.build(), jwt, client), response -> {
+            checkResourceFound(response, "[POST]", uri);
+
+            if(response.getCode() == HttpStatus.SC_CONFLICT){
+                throw new ResourceConflictException(String.format(
+                        "[POST] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        response.getBodyText(),
+                        uri.toString()
+                ));
+            }
+
+            if(response.getCode() >= 400 && response.getCode() < 500){
+                throw new IllegalApiContentException(String.format(
+                        "[POST] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        response.getBodyText(),
+                        uri.toString()
+                ));
+            }
+
+            if(response.getCode() >= 500 && response.getCode() < 600){
+                throw new ApiRequestFailedException(String.format(
+                        "[POST] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        response.getBodyText(),
+                        uri.toString()
+                ));
+            }
+
+            Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+            byte[] body = response.getBodyBytes();
+
+            return new CreatedResource<>(
+                    responseResourceObject(response, resourceClassType, contentType),
+                    CreatedResource.link(
+                            body,
+                            body != null ? body.length : 0,
+                            contentType,
+                            query,
+                            query != null && location != null ? uri.resolve(location.getValue()).toString() : null)
+            );
+        });
+    }
+
+    protected void setBody(SimpleRequestBuilder builder, Object content, ContentType contentType) throws IOException {
+        if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
+            setBody(builder,
+                    JsonCodec.requestWriter().writeValueAsBytes(new JsonApiRestRequestWrapper<>(content)),
+                    ContentType.create("application/json"));
+        }
+
+        if(ContentType.create("text/markdown").isSameMimeType(contentType)){
+            setBody(builder,
+                    ((String) content).getBytes(StandardCharsets.UTF_8),
+                    ContentType.create("text/markdown"));
+        }
+    }
+
+    private void setBody(SimpleRequestBuilder builder, byte[] body, ContentType contentType) throws IOException {
+        if(Compression.shouldCompress(configuration.orElse(null), body.length)) {
+            builder.setBody(Compression.gzip(body), contentType);
+            builder.setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+        } else {
+            builder.setBody(body, contentType);
+        }
+    }
+
+    protected void addApiTokenHeader(SimpleRequestBuilder builder) {
+        if(apiToken.isPresent()) {
+            builder.setHeader("Apimap-Api-Token", apiToken.get());
+        }
+    }
+
+    protected void checkResourceFound(SimpleHttpResponse response, String action, URI uri) throws ResourceNotFoundException {
+        if(response.getCode() == HttpStatus.SC_NOT_FOUND || response.getCode() == HttpStatus.SC_GONE){
+            throw new ResourceNotFoundException(String.format(
+                    "%s Status Code: %s, URL: %s",
+                    action,
+                    response.getCode(),
+                    uri.toString()
+            ));
+        }
+    }
+
+    protected <T> T responseResourceObject(SimpleHttpResponse response, Class<T> resourceClassType, ContentType contentType) throws IOException, IncorrectTokenException {
+        if(response.getCode() == HttpStatus.SC_UNAUTHORIZED){
+            throw new IncorrectTokenException("Missing API token");
+        }
+
+        if(response.getBodyBytes() == null) {
+            return null;
+        }
+
+        if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
+            JsonApiRestResponseWrapper<T> element = JsonCodec.responseReader(resourceClassType).readValue(response.getBodyBytes());
+            return element.getData();
+        }
+
+        if(ContentType.create("text/markdown").isSameMimeType(contentType)){
+            try (BufferedReader reader = new BufferedReader(new StringReader(new String(response.getBodyBytes(), StandardCharsets.UTF_8)))) {
+                return (T) reader
+                        .lines()
+                        .collect(Collectors.joining("\n"));
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "BaseAsyncRestClient{" +
+                "configuration=" + configuration +
+                ", queries=" + queries +
+                '}';
+    }
+}
@@ -16,19 +16,24 @@ limitations under the License.
 
 package io.apimap.client.client;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.apimap.api.rest.ApiDataRestEntity;
 import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.WriteResult;
 import io.apimap.client.client.query.ApiQuery;
 import io.apimap.client.client.query.CreateResourceQuery;
 import io.apimap.client.client.query.RelationshipTraversingQuery;
 import io.apimap.client.exception.ApiRequestFailedException;
+import io.apimap.client.exception.CircuitOpenException;
 import io.apimap.client.exception.IllegalApiContentException;
 import io.apimap.client.exception.IncorrectTokenException;
 import io.apimap.client.exception.MissingAccessTokenException;
+import io.apimap.client.exception.OperationTimeoutException;
+import io.apimap.client.exception.ResourceConflictException;
+import io.apimap.client.exception.ResourceNotFoundException;
 import io.apimap.oauth.TokenSuccessfulResponse;
 import io.apimap.orchestra.rest.ZeroconfConfigurationResponse;
 import io.apimap.rest.jsonapi.JsonApiRestRequestWrapper;
@@ -38,26 +43,35 @@ import org.apache.hc.client5.http.classic.methods.HttpDelete;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.*;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.FileEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
-import org.apache.hc.core5.http.message.BasicHeader;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 public class BaseRestClient {
-    private static final int ABSOLUTE_MAX_CALLSTACK_DEPTH = 20;
-    private static final int MINIMUM_CALLSTACK_DEPTH = 0;
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
 
     protected Optional<RestClientConfiguration> configuration;
 
@@ -65,8 +79,11 @@ public class BaseRestClient {
 
     protected ArrayList<ApiQuery> queries = new ArrayList<>();
     protected Optional<String> apiToken = Optional.empty();
+    protected ListingCache listingCache;
+    protected Deadline deadline;
+    protected String requestId;
 
-    protected static class Endpoints {
+    public static class Endpoints {
         private String orchestra;
         private String api;
 
@@ -115,23 +132,61 @@ public class BaseRestClient {
         this.apiToken = Optional.ofNullable(apiToken);
     }
 
+    /**
+     * Shares the listings read while traversing with the other clients using the same cache, see {@link ListingCache}.
+     */
+    public void setListingCache(ListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+
+    /**
+     * Limits all following requests to the time left of the deadline, see {@link Deadline}. Null removes the limit.
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Sends the id as X-Request-Id on all following requests that have none, so the requests of one operation can
+     * be correlated in the server logs. Null leaves it to the http client, which gives each request an id of its own.
+     */
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
     private Optional<String> getApiToken(){
         return this.apiToken;
     }
 
     protected ObjectMapper defaultObjectMapper() {
-        return new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
+        return JsonCodec.objectMapper();
     }
 
-    protected CloseableHttpClient defaultCloseableHttpClient(UUID uuid) {
+    /**
+     * Returns the injected http client, or the pooled client shared by all clients with an equal configuration.
+     * The returned client is long-lived and must not be closed by the caller, see {@link HttpClientRegistry}.
+     */
+    protected CloseableHttpClient defaultCloseableHttpClient() {
         if(this.httpClient != null) return this.httpClient;
 
-        final ArrayList<Header> headers = new ArrayList<>();
-        headers.add(new BasicHeader("X-Request-Id", uuid.toString()));
+        return HttpClientRegistry.getClient(configuration.orElse(null));
+    }
 
-        return HttpClients.custom().setDefaultHeaders(headers).build();
+    /**
+     * Consumes any remaining content and closes the response, releasing the connection back to the pool.
+     */
+    protected void releaseResponse(CloseableHttpResponse response) {
+        if(response == null) return;
+
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (Exception ignored) {
+        }
+
+        try {
+            response.close();
+        } catch (Exception ignored) {
+        }
     }
 
     protected void addApiQuery(ApiQuery query) {
@@ -139,6 +194,13 @@ public class BaseRestClient {
     }
 
     protected Optional<Endpoints> getEndpoints(CloseableHttpClient client) throws IOException {
+        if(configuration.isPresent() && configuration.get().hasStaticEndpoints()){
+            return Optional.of(new Endpoints(
+                configuration.get().getOrchestraURL(),
+                configuration.get().getApiURL()
+            ));
+        }
+
         if(configuration.isPresent() && configuration.get().isDebugMode()){
             System.out.println("[ZEROCONF] Zeroconf from endpoint: " + configuration.get().getZeroconfURL());
         }
@@ -147,29 +209,35 @@ public class BaseRestClient {
             return Optional.empty();
         }
 
-        CloseableHttpResponse response = null;
+        return Optional.of(EndpointCache.get(
+            configuration.get().getZeroconfURL(),
+            configuration.get().getEndpointCacheTtlSeconds(),
+            () -> requestEndpoints(client)
+        ));
+    }
 
-        Endpoints returnValue = null;
+    protected Endpoints requestEndpoints(CloseableHttpClient client) throws IOException {
+        if(configuration.isPresent() && configuration.get().isDebugMode()){
+            System.out.println("[ZEROCONF] Requesting endpoints from: " + configuration.get().getZeroconfURL());
+        }
+
+        CloseableHttpResponse response = null;
 
         try {
-            response = client.execute(new HttpGet(configuration.get().getZeroconfURL()));
+            response = send(new HttpGet(configuration.get().getZeroconfURL()), client);
 
-            ZeroconfConfigurationResponse configurationResponse = defaultObjectMapper().readValue(response.getEntity().getContent(), ZeroconfConfigurationResponse.class);
+            ZeroconfConfigurationResponse configurationResponse = JsonCodec.reader(ZeroconfConfigurationResponse.class).readValue(response.getEntity().getContent());
 
-            returnValue = new Endpoints(
+            return new Endpoints(
                 configurationResponse.getEndpoint().getOrchestra(),
                 configurationResponse.getEndpoint().getApi()
             );
         } finally {
-            if (response != null) {
-                response.close();
-            }
+            releaseResponse(response);
         }
-
-        return Optional.of(returnValue);
     }
 
-    protected Optional<String> getJwtToken(CloseableHttpClient client, String url) throws IOException, MissingAccessTokenException {
+    protected Optional<AccessToken> getJwtToken(CloseableHttpClient client, String url) throws IOException, MissingAccessTokenException {
         if(configuration.isPresent() && configuration.get().isDebugMode()){
             System.out.println("[JWT] JWT from endpoint : " + url);
         }
@@ -178,165 +246,615 @@ public class BaseRestClient {
             return Optional.empty();
         }
 
+        String returnValue = TokenCache.get(tokenCacheKey(url), () -> requestJwtToken(client, url));
+
+        return Optional.of(new AccessToken(url, returnValue));
+    }
+
+    /**
+     * Replaces a token rejected by the server with a new one, unless another operation already did.
+     */
+    protected void renewJwtToken(CloseableHttpClient client, AccessToken jwt) throws IOException, MissingAccessTokenException {
+        if(configuration.isPresent() && configuration.get().isDebugMode()){
+            System.out.println("[JWT] Token rejected, renewing from endpoint : " + jwt.getUrl());
+        }
+
+        TokenCache.invalidate(tokenCacheKey(jwt.getUrl()), jwt.getValue());
+        jwt.setValue(TokenCache.get(tokenCacheKey(jwt.getUrl()), () -> requestJwtToken(client, jwt.getUrl())));
+    }
+
+    protected TokenCache.Token requestJwtToken(CloseableHttpClient client, String url) throws IOException, MissingAccessTokenException {
         CloseableHttpResponse response = null;
 
         String returnValue = null;
+        long expiresAt;
 
         try {
             if(configuration.isPresent() && configuration.get().isDebugMode()){
                 System.out.println("[JWT] Request: " + url + "?client_id=" + this.configuration.get().getAccount() +"&client_secret=" + this.configuration.get().getSecret());
             }
 
-            response = client.execute(new HttpPost(url + "?client_id=" + this.configuration.get().getAccount() +"&client_secret=" + this.configuration.get().getSecret()));
+            response = send(new HttpPost(url + "?client_id=" + this.configuration.get().getAccount() +"&client_secret=" + this.configuration.get().getSecret()), client);
 
-            TokenSuccessfulResponse tokenResponse = defaultObjectMapper().readValue(response.getEntity().getContent(), TokenSuccessfulResponse.class);
+            JsonNode tokenNode = defaultObjectMapper().readTree(response.getEntity().getContent());
+            TokenSuccessfulResponse tokenResponse = defaultObjectMapper().treeToValue(tokenNode, TokenSuccessfulResponse.class);
+
+            if(tokenResponse == null || tokenResponse.getAccessToken() == null) {
+                throw new MissingAccessTokenException("Missing access token, client not authorized.");
+            }
 
             returnValue = tokenResponse.getAccessToken();
+            expiresAt = TokenCache.expiresAt(returnValue, tokenNode, defaultObjectMapper());
         } catch (com.fasterxml.jackson.databind.exc.MismatchedInputException e) {
             throw new MissingAccessTokenException("Missing access token, client not authorized.");
         } finally {
-            if (response != null) {
-                response.close();
-            }
+            releaseResponse(response);
         }
 
         if(configuration.isPresent() && configuration.get().isDebugMode()){
             System.out.println("[JWT] Token received: " + returnValue);
         }
 
-        return Optional.of(returnValue);
+        return new TokenCache.Token(returnValue, expiresAt);
+    }
+
+    private String tokenCacheKey(String url) {
+        return TokenCache.key(url, configuration.orElse(null));
+    }
+
+    /**
+     * Executes the request with the bearer token. If the token is rejected with 401 it is renewed and the request
+     * is sent one more time.
+     */
+    protected CloseableHttpResponse execute(ClassicHttpRequest request, AccessToken jwt, CloseableHttpClient client) throws IOException, IncorrectTokenException {
+        if(jwt == null) {
+            return send(request, client);
+        }
+
+        request.setHeader(HttpHeaders.AUTHORIZATION, jwt.bearer());
+        CloseableHttpResponse response = send(request, client);
+
+        if(response == null
+                || response.getCode() != 401
+                || (request.getEntity() != null && !request.getEntity().isRepeatable())) {
+            return response;
+        }
+
+        releaseResponse(response);
+
+        try {
+            renewJwtToken(client, jwt);
+        } catch (MissingAccessTokenException e) {
+            throw new IncorrectTokenException(e);
+        }
+
+        request.setHeader(HttpHeaders.AUTHORIZATION, jwt.bearer());
+        return send(request, client);
     }
 
-    protected Optional<URI> performQueries(CloseableHttpClient client, String url, String jwt) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
+    /**
+     * Sends the request, retrying it as allowed by the {@link RetryPolicy} of the configuration. Requests to a host
+     * whose {@link CircuitBreaker} is open fail at once with {@link CircuitOpenException}. With a deadline each
+     * attempt gets the remaining time, and {@link OperationTimeoutException} is thrown once it has run out.
+     * Slow GET requests are hedged if the configuration enables it, see {@link HedgePolicy}.
+     */
+    protected CloseableHttpResponse send(ClassicHttpRequest request, CloseableHttpClient client) throws IOException {
+        if(requestId != null && !request.containsHeader(HttpClientRegistry.REQUEST_ID_HEADER)) {
+            request.setHeader(HttpClientRegistry.REQUEST_ID_HEADER, requestId);
+        }
+
+        RetryPolicy retryPolicy = RetryPolicy.forConfiguration(configuration.orElse(null));
+        CircuitBreaker circuitBreaker = CircuitBreaker.forHost(configuration.orElse(null), host(request));
+        HedgePolicy hedgePolicy = "GET".equals(request.getMethod()) && request instanceof HttpUriRequestBase
+                ? HedgePolicy.forConfiguration(configuration.orElse(null))
+                : null;
+
+        for (int attempt = 0; ; attempt++) {
+            if(deadline != null) {
+                deadline.check();
+                limitToDeadline(request);
+            }
+
+            if(circuitBreaker != null) {
+                circuitBreaker.acquire();
+            }
+
+            CloseableHttpResponse response;
+
+            try {
+                response = hedgePolicy != null
+                        ? hedgePolicy.execute((HttpUriRequestBase) request, client)
+                        : client.execute(request);
+            } catch (IOException | RuntimeException e) {
+                if(e instanceof IOException && deadline != null && deadline.isExpired()) {
+                    // The request was cut short by the deadline, not failed by the host
+                    if(circuitBreaker != null) {
+                        circuitBreaker.onCancelled();
+                    }
+
+                    deadline.check();
+                }
+
+                if(circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+
+                if(!(e instanceof IOException) || !retryPolicy.isRetryable(request, (IOException) e, attempt)) {
+                    throw e;
+                }
+
+                long delay = retryPolicy.delayMillis(attempt, null);
+
+                if(deadline != null && delay >= deadline.remainingMillis()) {
+                    throw e;
+                }
+
+                if(configuration.isPresent() && configuration.get().isDebugMode()) {
+                    System.out.println("[RETRY] " + request.getMethod() + " " + host(request) + " failed: " + e.getMessage());
+                }
+
+                RetryPolicy.sleep(delay);
+                continue;
+            }
+
+            if(circuitBreaker != null) {
+                if(response != null && RetryPolicy.isUnavailable(response)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+            }
+
+            if(response == null || !retryPolicy.isRetryable(request, response, attempt)) {
+                return response;
+            }
+
+            long delay = retryPolicy.delayMillis(attempt, response);
+
+            if(delay < 0 || (deadline != null && delay >= deadline.remainingMillis())) {
+                return response;
+            }
+
+            if(configuration.isPresent() && configuration.get().isDebugMode()) {
+                System.out.println("[RETRY] " + request.getMethod() + " " + host(request) + " answered " + response.getCode() + ", retrying in " + delay + " ms");
+            }
+
+            releaseResponse(response);
+            RetryPolicy.sleep(delay);
+        }
+    }
+
+    /**
+     * Lowers the connect, connection request and response timeouts of the request to the time left.
+     */
+    @SuppressWarnings("deprecation")
+    private void limitToDeadline(ClassicHttpRequest request) {
+        if(!(request instanceof HttpUriRequestBase) || !configuration.isPresent()) {
+            return;
+        }
+
+        long remaining = Math.max(1, deadline.remainingMillis());
+
+        // The connect timeout of the request overrides the one of the connection manager
+        ((HttpUriRequestBase) request).setConfig(RequestConfig.custom()
+                .setConnectTimeout(HttpClientRegistry.timeout(within(configuration.get().getConnectTimeoutMillis(), remaining)))
+                .setConnectionRequestTimeout(HttpClientRegistry.timeout(remaining))
+                .setResponseTimeout(HttpClientRegistry.timeout(within(configuration.get().getResponseTimeoutMillis(), remaining)))
+                .build());
+    }
+
+    private static long within(long timeoutMillis, long remainingMillis) {
+        return timeoutMillis > 0 ? Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+    }
+
+    private static String host(ClassicHttpRequest request) {
+        try {
+            URI uri = request.getUri();
+            return uri.getScheme() + "://" + uri.getAuthority();
+        } catch (URISyntaxException e) {
+            return String.valueOf(request.getAuthority());
+        }
+    }
+
+    protected Optional<URI> performQueries(CloseableHttpClient client, String url, AccessToken jwt) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
         if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Run " + this.queries.size() + " http queries"); }
         if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Configuration: " + this.configuration); }
         if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Client: " + client); }
 
-        if(configuration.isPresent()){
-            return Optional.of(enumerateQueries(
-                new HttpGet(url),
-                jwt,
-                queries,
-                client,
-                configuration.get().getQueryCallstackDepth()));
+        if(!configuration.isPresent()){
+            return Optional.empty();
+        }
+
+        boolean pathCacheEnabled = configuration.get().getPathCacheSize() > 0;
+        String pathKey = PathCache.key(url, queries);
+
+        if(pathCacheEnabled) {
+            URI cachedURI = PathCache.forConfiguration(configuration.get()).get(pathKey);
+            if(cachedURI != null) {
+                if(configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Using cached path " + cachedURI); }
+                return Optional.of(cachedURI);
+            }
+        }
+
+        URI contentURI = enumerateQueries(
+            URI.create(url),
+            jwt,
+            queries.toArray(new ApiQuery[0]),
+            client);
+
+        if(pathCacheEnabled && contentURI != null) {
+            PathCache.forConfiguration(configuration.get()).put(pathKey, contentURI);
         }
 
-        return Optional.empty();
+        return Optional.ofNullable(contentURI);
     }
 
-    protected URI enumerateQueries(HttpGet request, String jwt, ArrayList<ApiQuery> remainingQueries, CloseableHttpClient client, int queryCallstackDepth) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Enumerating http queries"); }
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Client: " + client); }
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Request: " + request); }
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] JWT: " + jwt); }
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Callstack depth left: " + queryCallstackDepth); }
+    /**
+     * Removes the cached path for the current queries. Returns true if the path was cached, meaning the queries
+     * should be performed again.
+     */
+    protected boolean invalidateQueries(String url) {
+        if(!configuration.isPresent() || configuration.get().getPathCacheSize() <= 0){
+            return false;
+        }
+
+        if(configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Invalidating cached path"); }
+
+        return PathCache.forConfiguration(configuration.get()).remove(PathCache.key(url, queries));
+    }
+
+    protected boolean isResourceMissing(CloseableHttpResponse response) {
+        return response != null
+                && (response.getCode() == HttpStatus.SC_NOT_FOUND || response.getCode() == HttpStatus.SC_GONE);
+    }
+
+    /**
+     * @deprecated the depth is no longer limited, use {@link #enumerateQueries(URI, AccessToken, ApiQuery[], CloseableHttpClient)}
+     */
+    @Deprecated
+    protected URI enumerateQueries(HttpGet request, AccessToken jwt, ArrayList<ApiQuery> remainingQueries, CloseableHttpClient client, int queryCallstackDepth) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
+        return enumerateQueries(request.getUri(), jwt, remainingQueries.toArray(new ApiQuery[0]), client);
+    }
+
+    /**
+     * Resolves the chain of queries starting at the root, one hop per query.
+     *
+     * A query whose link is missing fails the traversal, unless it is followed by a create query. The resource is
+     * then created and the traversal continues from the link in the response to the create, the self link or
+     * Location header of the resource or the link of its relationship. Only if the response has no such link is
+     * the hop read again. A hop that is still missing after the create fails the traversal.
+     *
+     * With {@link CreateResourceQuery.STRATEGY#CREATE_FIRST} the resource is created before the hop is read, and
+     * the hop is only read if the server responds that the resource already exists. With either strategy a create
+     * answered with 409 Conflict is followed by reading the hop.
+     * A create whose response has no readable resource fails the traversal with {@link ApiRequestFailedException}.
+     *
+     * If enabled, a hop found missing is remembered for a short while, see {@link MissingResourceCache}. A chain
+     * that would create the resource in that time skips reading the hop, and waits for a create of the same
+     * resource by another chain instead of posting it again.
+     */
+    protected URI enumerateQueries(URI root, AccessToken jwt, ApiQuery[] chain, CloseableHttpClient client) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException {
+        boolean debugMode = configuration.isPresent() && configuration.get().isDebugMode();
+        MissingResourceCache missingCache = MissingResourceCache.forConfiguration(configuration.orElse(null));
+
+        URI current = root;
+        int cursor = 0;
+        int createdAt = -1;
+
+        while (cursor < chain.length) {
+            ApiQuery query = chain[cursor];
+
+            if (query.getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
+                cursor++;
+                continue;
+            }
+
+            CreateResourceQuery createQuery = cursor + 1 < chain.length && chain[cursor + 1].getType() == ApiQuery.TYPE.CREATE_RESOURCE
+                    ? (CreateResourceQuery) chain[cursor + 1]
+                    : null;
+
+            if (createQuery != null && createQuery.getStrategy() == CreateResourceQuery.STRATEGY.CREATE_FIRST && createdAt != cursor) {
+                createdAt = cursor;
+
+                try {
+                    CreatedResource<?> created = createOnce(current, createQuery, query, jwt, client, missingCache);
+
+                    if (created == null) {
+                        throw unreadableCreate(query, current);
+                    }
+
+                    if (created.getLink() != null) {
+                        current = URI.create(created.getLink());
+                        cursor++;
+                    }
+
+                    continue;
+                } catch (ResourceConflictException e) {
+                    if(debugMode){ System.out.println("[ENUMERATING] Resource already exists, running query " + query); }
+                }
+            }
+
+            String missingKey = missingCache != null ? MissingResourceCache.key(current, query) : null;
+            boolean knownMissing = createQuery != null && createdAt != cursor && missingCache != null && missingCache.isMissing(missingKey);
+            String url = null;
+
+            if (knownMissing) {
+                if(debugMode){ System.out.println("[ENUMERATING] Query " + query + " recently found missing on " + current); }
+            } else {
+                if(debugMode){ System.out.println("[ENUMERATING] Running query " + query.getType() + " on " + current); }
+
+                url = resolveLink(current, query, jwt, client);
 
-        if (queryCallstackDepth < MINIMUM_CALLSTACK_DEPTH || queryCallstackDepth > ABSOLUTE_MAX_CALLSTACK_DEPTH) {
-            if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Max callstack depth reached, quitting"); }
+                if (url != null) {
+                    current = URI.create(url);
+                    cursor++;
+                    continue;
+                }
+
+                if (missingCache != null) {
+                    missingCache.missing(missingKey);
+                }
+            }
+
+            if (createQuery == null || createdAt == cursor) {
+                if(debugMode){ System.out.println("[ENUMERATING] Unable to resolve query " + query + " on " + current); }
+                return null;
+            }
+
+            CreatedResource<?> created;
+            createdAt = cursor;
+
+            try {
+                created = createOnce(current, createQuery, query, jwt, client, missingCache);
+            } catch (ResourceConflictException e) {
+                // Created by someone else since the hop was read
+                if(debugMode){ System.out.println("[ENUMERATING] Resource already exists, running query " + query + " again"); }
+                continue;
+            }
+
+            if (created == null) {
+                throw unreadableCreate(query, current);
+            }
+
+            if (created.getLink() != null) {
+                current = URI.create(created.getLink());
+                cursor++;
+            }
+        }
+
+        if(debugMode){ System.out.println("[ENUMERATING] Last query reached, returning url " + current); }
+
+        return current;
+    }
+
+    private ApiRequestFailedException unreadableCreate(ApiQuery query, URI uri) {
+        return new ApiRequestFailedException(String.format(
+                "[ENUMERATING] Created resource unreadable, Query: %s, URL: %s",
+                query,
+                uri
+        ));
+    }
+
+    /**
+     * Creates the resource the query was looking for and returns it with the url to continue from, or null if the
+     * response to the create has no readable resource. Creates of the same resource by chains sharing the missing
+     * cache are done one at a time. A chain that waited while another chain created it reads the hop again with
+     * its own client and continues from the link it finds there, the resource is only created if it's still
+     * missing. Such a chain gets no content, so it stores no api token and doesn't call the callback.
+     */
+    private CreatedResource<?> createOnce(URI uri, CreateResourceQuery createQuery, ApiQuery query, AccessToken jwt, CloseableHttpClient client, MissingResourceCache missingCache) throws IOException, IllegalApiContentException, IncorrectTokenException, ApiRequestFailedException {
+        if (missingCache == null) {
+            CreatedResource<?> created = createResource(uri, createQuery, query, jwt, client);
+            return created != null ? new CreatedResource<>(created.getContent(), createdLink(created, query)) : null;
+        }
+
+        String key = MissingResourceCache.key(uri, query);
+        MissingResourceCache.Entry missing = missingCache.get(key);
+        ReentrantLock lock = missingCache.lock(key);
+        lock.lock();
+
+        try {
+            if (missing != null && missingCache.get(key) != missing) {
+                // Cleared by a create while this chain waited
+                String url = resolveLink(uri, query, jwt, client);
+
+                if (url != null) {
+                    if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Resource created by another chain, continuing from " + url); }
+                    return new CreatedResource<>(null, url);
+                }
+            }
+
+            CreatedResource<?> created;
+
+            try {
+                created = createResource(uri, createQuery, query, jwt, client);
+            } finally {
+                missingCache.remove(key);
+            }
+
+            return created != null ? new CreatedResource<>(created.getContent(), createdLink(created, query)) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The url to continue from after the resource the query was looking for has been created, instead of reading
+     * the hop again. Null if the response to the create has no link for the query.
+     */
+    private String createdLink(CreatedResource<?> created, ApiQuery query) {
+        String url = created.getLink();
+
+        if (url == null && query.getType() == ApiQuery.TYPE.RELATIONSHIP_TRAVERSING && created.getContent() instanceof ApiDataRestEntity) {
+            url = ((RelationshipTraversingQuery) query).urlFromEntity(((ApiDataRestEntity) created.getContent()).getRelationships());
+        }
+
+        if (url != null && configuration.isPresent() && configuration.get().isDebugMode()) {
+            System.out.println("[ENUMERATING] Continuing from created resource " + url);
+        }
+
+        return url;
+    }
+
+    private String resolveLink(URI uri, ApiQuery query, AccessToken jwt, CloseableHttpClient client) throws IOException, IncorrectTokenException {
+        if(listingCache == null) {
+            return readLink(uri, query, jwt, client);
+        }
+
+        byte[] listing = listingCache.get(uri.toString(), () -> readListing(uri, jwt, client));
+
+        if(listing == null) {
             return null;
         }
 
-        if (remainingQueries.size() <= 0) {
-            if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Last query reached, returning url " + request.getUri()); }
-            return request.getUri();
+        try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(listing)) {
+            return query.urlFromStream(parser);
         }
+    }
 
-        ApiQuery query = remainingQueries.get(0);
-        if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] Running query " + query.getType()); }
+    private CreatedResource<?> createResource(URI uri, CreateResourceQuery createQuery, ApiQuery query, AccessToken jwt, CloseableHttpClient client) throws IllegalApiContentException, IncorrectTokenException, HttpHostConnectException, ApiRequestFailedException {
+        Object object = createQuery.getObject();
 
-        if (query.getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
-            return enumerateQueries(
-                    request,
-                    jwt,
-                    new ArrayList<ApiQuery>(remainingQueries.subList(1, remainingQueries.size())),
-                    client,
-                    --queryCallstackDepth
-            );
+        if (object == null) {
+            throw new IllegalApiContentException(String.format(
+                    "[ENUMERATING] No object to create, Query: %s, URL: %s",
+                    query,
+                    uri
+            ));
         }
 
-        request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + jwt);
-        CloseableHttpResponse response = client.execute(request);
-        String url = null;
+        CreatedResource<?> created;
 
-        if(response != null
-                && response.getEntity() != null
-                && (response.getCode() < 299 && response.getCode() >= 200)) {
-            JsonApiRestResponseWrapper element = defaultObjectMapper().readValue(response.getEntity().getContent(), JsonApiRestResponseWrapper.class);
-            url = query.urlFromContent(element);
-        }else{
-            if (configuration.isPresent() && configuration.get().isDebugMode()) {
-                System.out.println("[ENUMERATING] CloseableHttpResponse returned unusable response");
+        try {
+            created = postResource(new HttpPost(uri), object, createQuery.getResourceClassType(object), createQuery.getContentType(), client, jwt, query);
+        } finally {
+            // Also on a conflict, the hop is read again to find the resource someone else created
+            if (listingCache != null) {
+                listingCache.invalidate(uri.toString());
             }
         }
 
-        // Check if next query is a create query and current request failed
-        if (remainingQueries.size() > 1 && url == null) {
-            if (remainingQueries.get(1).getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
-                HttpPost postRequest = new HttpPost(request.getUri());
-                postRequest.setHeader("Authorization", "Bearer " + jwt);
+        Object content = created.getContent();
 
-                CreateResourceQuery createQuery = (CreateResourceQuery) remainingQueries.get(1);
-                Object content = postResource(postRequest, createQuery.getObject(), createQuery.getResourceClassType(), createQuery.getContentType(), client);
+        String createdURL = created.getSelf() != null ? created.getSelf() : created.getLink();
 
-                if (content == null) {
-                    return null; //Todo throw exception
+        if (createdURL != null) {
+            // A resource created again after it was deleted elsewhere no longer has the bodies written before
+            WriteHashStore.forConfiguration(configuration.orElse(null)).remove(createdURL);
+        }
+
+        if (content == null) {
+            return null;
+        }
+
+        created(content, createQuery);
+
+        return created;
+    }
+
+    /**
+     * Stores the api key of the created resource and calls the callback of the query. Nothing is done without
+     * content.
+     */
+    private void created(Object content, CreateResourceQuery createQuery) {
+        if (content == null) {
+            return;
+        }
+
+        if (content instanceof ApiDataRestEntity && ((ApiDataRestEntity) content).getMeta() != null) {
+            // Store api key
+            this.setApiToken(((ApiDataRestEntity) content).getMeta().getToken());
+        }
+
+        if (createQuery.getCallback() != null) {
+            if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] New resource created, calling callback"); }
+            createQuery.getCallback().accept(content);
+        } else {
+            if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] New resource created, no callback found"); }
+        }
+    }
+
+    private String readLink(URI uri, ApiQuery query, AccessToken jwt, CloseableHttpClient client) throws IOException, IncorrectTokenException {
+        ResponseCache responseCache = ResponseCache.forConfiguration(configuration.orElse(null));
+        HttpGet request = new HttpGet(uri);
+        ResponseCache.Entry cached = responseCache != null ? responseCache.revalidate(uri.toString(), request) : null;
+        CloseableHttpResponse response = null;
+
+        try {
+            response = execute(request, jwt, client);
+
+            if(cached != null && response != null && response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                return responseCache.hit(cached).link(query);
+            }
+
+            if(response != null
+                    && response.getEntity() != null
+                    && (response.getCode() < 299 && response.getCode() >= 200)) {
+                if(responseCache != null && ResponseCache.isCacheable(response)) {
+                    return responseCache.put(uri.toString(), response, ResponseBody.toByteArray(response.getEntity(), maxResponseBodyBytes())).link(query);
                 }
 
-                if (createQuery.getCallback() != null) {
-                    if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] New resource created, calling callback"); }
-
-                    if (createQuery.getResourceClassType() == ApiDataRestEntity.class) {
-                        // Store api key
-                        if(((ApiDataRestEntity) content).getMeta() != null) {
-                            this.setApiToken(((ApiDataRestEntity) content).getMeta().getToken());
-                        }
-                        createQuery.getCallback().accept(content);
-                    } else {
-                        createQuery.getCallback().accept(content);
-                    }
-                }else{
-                    if(configuration.isPresent() && configuration.get().isDebugMode()){ System.out.println("[ENUMERATING] New resource created, no callback found"); }
+                if(cached != null) {
+                    responseCache.remove(uri.toString());
                 }
 
-                // Check if next query is a relationship query that works on the content received
-                if(remainingQueries.size() > 1 && remainingQueries.get(0).getType() == ApiQuery.TYPE.RELATIONSHIP_TRAVERSING) {
-                    url = ((RelationshipTraversingQuery) remainingQueries.get(0)).urlFromEntity(((ApiDataRestEntity) content).getRelationships());
-
-                    return enumerateQueries(
-                            new HttpGet(url),
-                            jwt,
-                            new ArrayList<ApiQuery>(remainingQueries.subList(1, remainingQueries.size())),
-                            client,
-                            --queryCallstackDepth
-                    );
-                } else {
-                    url = request.getUri().toString();
-
-                    return enumerateQueries(
-                            new HttpGet(url),
-                            jwt,
-                            remainingQueries,
-                            client,
-                            --queryCallstackDepth
-                    );
+                try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(response.getEntity().getContent())) {
+                    return query.urlFromStream(parser);
                 }
             }
-        }
 
-        if (url != null) {
-            return enumerateQueries(
-                    new HttpGet(url),
-                    jwt,
-                    new ArrayList<ApiQuery>(remainingQueries.subList(1, remainingQueries.size())),
-                    client,
-                    --queryCallstackDepth
-            );
+            if (configuration.isPresent() && configuration.get().isDebugMode()) {
+                System.out.println("[ENUMERATING] CloseableHttpResponse returned unusable response");
+            }
+
+            return null;
+        } finally {
+            releaseResponse(response);
         }
+    }
 
-        return null;
+    protected byte[] readListing(URI uri, AccessToken jwt, CloseableHttpClient client) throws IOException, IncorrectTokenException {
+        ResponseCache responseCache = ResponseCache.forConfiguration(configuration.orElse(null));
+        HttpGet request = new HttpGet(uri);
+        ResponseCache.Entry cached = responseCache != null ? responseCache.revalidate(uri.toString(), request) : null;
+        CloseableHttpResponse response = null;
+
+        try {
+            response = execute(request, jwt, client);
+
+            if(cached != null && response != null && response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                return responseCache.hit(cached).getBody();
+            }
+
+            if(response != null
+                    && response.getEntity() != null
+                    && (response.getCode() < 299 && response.getCode() >= 200)) {
+                byte[] listing = ResponseBody.toByteArray(response.getEntity(), maxResponseBodyBytes());
+
+                if(responseCache != null && ResponseCache.isCacheable(response)) {
+                    responseCache.put(uri.toString(), response, listing);
+                } else if(cached != null) {
+                    responseCache.remove(uri.toString());
+                }
+
+                return listing;
+            }
+
+            if (configuration.isPresent() && configuration.get().isDebugMode()) {
+                System.out.println("[ENUMERATING] CloseableHttpResponse returned unusable response");
+            }
+
+            return null;
+        } finally {
+            releaseResponse(response);
+        }
     }
 
     protected int deleteResource(HttpDelete deleteRequest, CloseableHttpClient client) throws ApiRequestFailedException, IncorrectTokenException {
+        return deleteResource(deleteRequest, client, null);
+    }
+
+    protected int deleteResource(HttpDelete deleteRequest, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
         CloseableHttpResponse response = null;
 
         try {
@@ -350,7 +868,15 @@ public class BaseRestClient {
                 System.out.println("[DELETE] " + deleteRequest.getHeader("Apimap-Api-Token"));
             }
 
-            response = client.execute(deleteRequest);
+            response = execute(deleteRequest, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        "[DELETE] Status Code: %s, URL: %s",
+                        response.getCode(),
+                        deleteRequest.getUri().toString()
+                ));
+            }
 
             if(response.getCode() < 200 || response.getCode() > 299){
                 throw new ApiRequestFailedException(String.format(
@@ -361,66 +887,237 @@ public class BaseRestClient {
                 ));
             }
 
+            WriteHashStore.forConfiguration(configuration.orElse(null)).remove(deleteRequest.getUri().toString());
+
             return responseStatusCode(response);
+        } catch (ResourceNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             if(configuration.isPresent() && configuration.get().isDebugMode()){
                 System.out.println(Arrays.toString(e.getStackTrace()));
             }
             throw new ApiRequestFailedException(e.getMessage());
         } finally {
-            if(response != null) {
-                try {
-                    response.close();
-                }catch (Exception ignored){
-
-                }
-            }
+            releaseResponse(response);
         }
     }
 
     protected <T> T getResource(HttpGet getRequest, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client) throws ApiRequestFailedException, IncorrectTokenException {
+        return getResource(getRequest, resourceClassType, contentType, client, null);
+    }
+
+    protected <T> T getResource(HttpGet getRequest, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
         CloseableHttpResponse response = null;
 
         try {
-            response = client.execute(getRequest);
+            ResponseCache responseCache = ResponseCache.forConfiguration(configuration.orElse(null));
+            String url = getRequest.getUri().toString();
+            ResponseCache.Entry cached = responseCache != null ? responseCache.revalidate(url, getRequest) : null;
+
+            response = execute(getRequest, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        "[GET] Status Code: %s, URL: %s",
+                        response.getCode(),
+                        url
+                ));
+            }
+
+            if(cached != null && response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+                return responseResourceObject(responseCache.hit(cached).getBody(), resourceClassType, contentType);
+            }
+
+            if(responseCache != null
+                    && response.getEntity() != null
+                    && (response.getCode() < 299 && response.getCode() >= 200)
+                    && ResponseCache.isCacheable(response)) {
+                byte[] body = ResponseBody.toByteArray(response.getEntity(), maxResponseBodyBytes());
+                return responseResourceObject(responseCache.put(url, response, body).getBody(), resourceClassType, contentType);
+            }
+
             return responseResourceObject(response, resourceClassType, contentType);
+        } catch (ResourceNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             if(configuration.isPresent() && configuration.get().isDebugMode()){
                 System.out.println(Arrays.toString(e.getStackTrace()));
             }
             throw new ApiRequestFailedException(e.getMessage());
         } finally {
-            if(response != null) {
-                try {
-                    response.close();
-                }catch (Exception ignored){}
-            }
+            releaseResponse(response);
         }
     }
 
-    protected <T> T putResource(HttpPut putRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client) throws ApiRequestFailedException, IncorrectTokenException {
+    /**
+     * Copies the response body to the target stream as it arrives, without reading it into memory or changing
+     * its line endings. The stream is not closed. Returns the number of bytes written.
+     */
+    protected long getResource(HttpGet getRequest, OutputStream target, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
+        return downloadResource(getRequest, client, jwt, content -> {
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            long written = 0;
+            int read;
+
+            while ((read = content.read(buffer)) != -1) {
+                target.write(buffer, 0, read);
+                written += read;
+            }
+
+            return written;
+        });
+    }
+
+    /**
+     * Writes the response body to the file through a {@link FileChannel}, replacing what the file contained.
+     * Returns the number of bytes written.
+     */
+    protected long getResource(HttpGet getRequest, Path target, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
+        return downloadResource(getRequest, client, jwt, content -> {
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return channel.transferFrom(Channels.newChannel(content), 0, Long.MAX_VALUE);
+            }
+        });
+    }
+
+    private interface BodyTransfer {
+        long transfer(InputStream content) throws IOException;
+    }
+
+    private long downloadResource(HttpGet getRequest, CloseableHttpClient client, AccessToken jwt, BodyTransfer transfer) throws ApiRequestFailedException, IncorrectTokenException {
         CloseableHttpResponse response = null;
 
         try {
-            HttpEntity entity = null;
+            response = execute(getRequest, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        "[GET] Status Code: %s, URL: %s",
+                        response.getCode(),
+                        getRequest.getUri().toString()
+                ));
+            }
 
-            if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
-                entity = new StringEntity(
-                        defaultObjectMapper().writeValueAsString(new JsonApiRestRequestWrapper<>(content)),
-                        ContentType.create("application/json"));
+            if(response.getCode() == 401){
+                throw new IncorrectTokenException("Missing API token");
             }
 
-            if(ContentType.create("text/markdown").isSameMimeType(contentType)){
-                entity = new StringEntity(
-                        (String) content,
-                        ContentType.create("text/markdown"));
+            if(response.getCode() < 200 || response.getCode() > 299){
+                throw new ApiRequestFailedException(String.format(
+                        "[GET] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        EntityUtils.toString(response.getEntity(), "UTF-8"),
+                        getRequest.getUri().toString()
+                ));
             }
 
+            if(response.getEntity() == null) {
+                return 0;
+            }
+
+            try (InputStream content = response.getEntity().getContent()) {
+                return transfer.transfer(content);
+            }
+        } catch (ApiRequestFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            if(configuration.isPresent() && configuration.get().isDebugMode()){
+                System.out.println(Arrays.toString(e.getStackTrace()));
+            }
+            throw new ApiRequestFailedException(e.getMessage());
+        } finally {
+            releaseResponse(response);
+        }
+    }
+
+    protected <T> T putResource(HttpPut putRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client) throws ApiRequestFailedException, IncorrectTokenException {
+        return putResource(putRequest, content, resourceClassType, contentType, client, null);
+    }
+
+    protected <T> T putResource(HttpPut putRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
+        return putResource(putRequest, content, requestEntity(content, contentType), null, resourceClassType, contentType, client, jwt, null);
+    }
+
+    /**
+     * Puts the content unless the serialized body equals the one last written to the same URL. If the server
+     * returned an ETag for that write, the resource is also revalidated with a conditional GET, so a change made
+     * by someone else since is written over. Writes that are sent are recorded in the {@link WriteHashStore}.
+     */
+    protected <T> WriteResult<T> putResourceIfChanged(HttpPut putRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
+        WriteHashStore writeHashStore = WriteHashStore.forConfiguration(configuration.orElse(null));
+
+        try {
+            String url = putRequest.getUri().toString();
+            HttpEntity entity = requestEntity(content, contentType);
+            String hash = entity != null ? WriteHashStore.hash(entity) : null;
+            WriteHashStore.Entry previous = writeHashStore.get(url);
+
+            if(hash != null && previous != null && previous.getHash().equals(hash) && isUnchangedOnServer(url, previous.getEtag(), client, jwt)) {
+                if(configuration.isPresent() && configuration.get().isDebugMode()) {
+                    System.out.println("[PUT] Unchanged, skipping: " + url);
+                }
+
+                return WriteResult.skipped(resourceClassType.cast(content));
+            }
+
+            return WriteResult.sent(putResource(putRequest, content, entity, hash, resourceClassType, contentType, client, jwt, writeHashStore));
+        } catch (IOException | URISyntaxException e) {
+            throw new ApiRequestFailedException(e.getMessage());
+        }
+    }
+
+    /**
+     * The request body of the content, null if the content type is not supported. JSON is streamed to the
+     * connection, see {@link JsonEntity}.
+     */
+    protected HttpEntity requestEntity(Object content, ContentType contentType) {
+        if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
+            return new JsonEntity(new JsonApiRestRequestWrapper<>(content));
+        }
+
+        if(ContentType.create("text/markdown").isSameMimeType(contentType)){
+            return new StringEntity(
+                    (String) content,
+                    ContentType.create("text/markdown"));
+        }
+
+        return null;
+    }
+
+    /**
+     * True if the resource still has the ETag, or if there is no ETag to compare with. Any other answer,
+     * including a failed request, means the write should be sent.
+     */
+    private boolean isUnchangedOnServer(String url, String etag, CloseableHttpClient client, AccessToken jwt) throws IncorrectTokenException {
+        if(etag == null) {
+            return true;
+        }
+
+        CloseableHttpResponse response = null;
+
+        try {
+            HttpGet getRequest = new HttpGet(url);
+            getRequest.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+
+            response = execute(getRequest, jwt, client);
+
+            return response.getCode() == HttpStatus.SC_NOT_MODIFIED;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            releaseResponse(response);
+        }
+    }
+
+    private <T> T putResource(HttpPut putRequest, Object content, HttpEntity entity, String hash, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt, WriteHashStore writeHashStore) throws ApiRequestFailedException, IncorrectTokenException {
+        CloseableHttpResponse response = null;
+
+        try {
             if(configuration.isPresent() && configuration.get().isDebugMode()) {
                 System.out.println("[PUT] PUT resource: " + content.toString());
             }
 
-            putRequest.setEntity(entity);
+            putRequest.setEntity(Compression.compress(entity, configuration.orElse(null)));
 
             if (this.getApiToken().isPresent()) {
                 putRequest.setHeader("Apimap-Api-Token", defaultAuthorizationHeaderValue());
@@ -431,7 +1128,15 @@ public class BaseRestClient {
                 System.out.println("[PUT] " + putRequest.getHeader("Apimap-Api-Token"));
             }
 
-            response = client.execute(putRequest);
+            response = execute(putRequest, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        "[PUT] Status Code: %s, URL: %s",
+                        response.getCode(),
+                        putRequest.getUri().toString()
+                ));
+            }
 
             if(response.getCode() < 200 || response.getCode() > 299){
                 throw new ApiRequestFailedException(String.format(
@@ -442,6 +1147,11 @@ public class BaseRestClient {
                 ));
             }
 
+            if(writeHashStore != null && hash != null) {
+                Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                writeHashStore.put(putRequest.getUri().toString(), hash, etag != null ? etag.getValue() : null);
+            }
+
             return responseResourceObject(response, resourceClassType, contentType);
         } catch (ProtocolException | IOException | URISyntaxException e) {
             if(configuration.isPresent() && configuration.get().isDebugMode()){
@@ -449,33 +1159,29 @@ public class BaseRestClient {
             }
             throw new ApiRequestFailedException(e.getMessage());
         } finally {
-            if(response != null) {
-                try {
-                    response.close();
-                }catch (Exception ignored){}
-            }
+            releaseResponse(response);
         }
     }
 
     protected <T> T postResource(HttpPost postRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client) throws IllegalApiContentException, IncorrectTokenException, HttpHostConnectException, ApiRequestFailedException {
-        CloseableHttpResponse response = null;
+        return postResource(postRequest, content, resourceClassType, contentType, client, null);
+    }
 
-        try {
-            HttpEntity entity = null;
+    protected <T> T postResource(HttpPost postRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt) throws IllegalApiContentException, IncorrectTokenException, HttpHostConnectException, ApiRequestFailedException {
+        return postResource(postRequest, content, resourceClassType, contentType, client, jwt, null).getContent();
+    }
 
-            if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
-                entity = new StringEntity(
-                        defaultObjectMapper().writeValueAsString(new JsonApiRestRequestWrapper<>(content)),
-                        ContentType.create("application/json"));
-            }
+    /**
+     * Posts the content. If the post creates the resource a query was looking for, the url the query continues
+     * from is read from the same response, see {@link ApiQuery#urlFromCreated(JsonParser, String)}.
+     */
+    private <T> CreatedResource<T> postResource(HttpPost postRequest, Object content, Class<T> resourceClassType, ContentType contentType, CloseableHttpClient client, AccessToken jwt, ApiQuery query) throws IllegalApiContentException, IncorrectTokenException, HttpHostConnectException, ApiRequestFailedException {
+        CloseableHttpResponse response = null;
 
-            if(ContentType.create("text/markdown").isSameMimeType(contentType)){
-                entity = new StringEntity(
-                        (String) content,
-                        ContentType.create("text/markdown"));
-            }
+        try {
+            HttpEntity entity = requestEntity(content, contentType);
 
-            postRequest.setEntity(entity);
+            postRequest.setEntity(Compression.compress(entity, configuration.orElse(null)));
 
             if (this.getApiToken().isPresent()) {
                 postRequest.setHeader("Apimap-Api-Token", defaultAuthorizationHeaderValue());
@@ -486,7 +1192,24 @@ public class BaseRestClient {
                 System.out.println("[POST] " + postRequest.getHeader("Apimap-Api-Token"));
             }
 
-            response = client.execute(postRequest);
+            response = execute(postRequest, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        "[POST] Status Code: %s, URL: %s",
+                        response.getCode(),
+                        postRequest.getUri().toString()
+                ));
+            }
+
+            if(response.getCode() == HttpStatus.SC_CONFLICT){
+                throw new ResourceConflictException(String.format(
+                        "[POST] Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        EntityUtils.toString(response.getEntity(), "UTF-8"),
+                        postRequest.getUri().toString()
+                ));
+            }
 
             if(response.getCode() >= 400 && response.getCode() < 500){
                 throw new IllegalApiContentException(String.format(
@@ -506,7 +1229,14 @@ public class BaseRestClient {
                 ));
             }
 
-            return responseResourceObject(response, resourceClassType, contentType);
+            Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+            String locationURL = query != null && location != null ? postRequest.getUri().resolve(location.getValue()).toString() : null;
+
+            return ResponseBody.read(response.getEntity(), maxResponseBodyBytes(), (body, length) -> new CreatedResource<>(
+                    readResourceObject(body, length, resourceClassType, contentType),
+                    CreatedResource.link(body, length, contentType, query, locationURL),
+                    query != null ? CreatedResource.self(body, length, contentType, locationURL) : null
+            ));
         } catch (HttpHostConnectException | IllegalApiContentException | ApiRequestFailedException e) {
             throw e;
         } catch (Exception e) {
@@ -515,13 +1245,67 @@ public class BaseRestClient {
             }
             throw new ApiRequestFailedException(e.getMessage());
         } finally {
-            if(response != null) {
-                try {
-                    response.close();
-                }catch (Exception ignored){
+            releaseResponse(response);
+        }
+    }
 
-                }
+    /**
+     * Sends the file as body of the PUT or POST request. The {@link FileEntity} streams the file from disk on every
+     * attempt, so the document is never held in memory. For the same reason the body is not compressed.
+     * Returns the status code.
+     */
+    protected int uploadResource(HttpUriRequestBase request, Path file, ContentType contentType, CloseableHttpClient client, AccessToken jwt) throws ApiRequestFailedException, IncorrectTokenException {
+        String action = "[" + request.getMethod() + "] ";
+        CloseableHttpResponse response = null;
+
+        if(!Files.isRegularFile(file)) {
+            throw new ApiRequestFailedException(action + "No such file: " + file);
+        }
+
+        try {
+            if(configuration.isPresent() && configuration.get().isDebugMode()) {
+                System.out.println(action + "Upload file: " + file);
+            }
+
+            request.setEntity(new FileEntity(file.toFile(), contentType));
+
+            if (this.getApiToken().isPresent()) {
+                request.setHeader("Apimap-Api-Token", defaultAuthorizationHeaderValue());
+            }
+
+            response = execute(request, jwt, client);
+
+            if(isResourceMissing(response)){
+                throw new ResourceNotFoundException(String.format(
+                        action + "Status Code: %s, URL: %s",
+                        response.getCode(),
+                        request.getUri().toString()
+                ));
+            }
+
+            if(response.getCode() == 401){
+                throw new IncorrectTokenException("Missing API token");
+            }
+
+            if(response.getCode() < 200 || response.getCode() > 299){
+                throw new ApiRequestFailedException(String.format(
+                        action + "Status Code: %s, Content: %s, URL: %s",
+                        response.getCode(),
+                        EntityUtils.toString(response.getEntity(), "UTF-8"),
+                        request.getUri().toString()
+                ));
             }
+
+            return response.getCode();
+        } catch (ApiRequestFailedException e) {
+            throw e;
+        } catch (Exception e) {
+            if(configuration.isPresent() && configuration.get().isDebugMode()){
+                System.out.println(Arrays.toString(e.getStackTrace()));
+            }
+            throw new ApiRequestFailedException(e.getMessage());
+        } finally {
+            releaseResponse(response);
         }
     }
 
@@ -535,7 +1319,7 @@ public class BaseRestClient {
         try {
             returnValue = response.getCode();
         } finally {
-            response.close();
+            releaseResponse(response);
         }
 
         return returnValue;
@@ -546,30 +1330,49 @@ public class BaseRestClient {
             throw new IncorrectTokenException("Missing API token");
         }
 
+        try {
+            return ResponseBody.read(response.getEntity(), maxResponseBodyBytes(), (body, length) ->
+                    readResourceObject(body, length, resourceClassType, contentType)
+            );
+        } finally {
+            releaseResponse(response);
+        }
+    }
+
+    /**
+     * Reads a resource from a cached response body.
+     */
+    protected <T> T responseResourceObject(byte[] body, Class<T> resourceClassType, ContentType contentType) throws IOException {
+        return readResourceObject(body, body.length, resourceClassType, contentType);
+    }
+
+    private <T> T readResourceObject(byte[] body, int length, Class<T> resourceClassType, ContentType contentType) throws IOException {
         T returnValue = null;
 
-        try {
-            if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
-                JavaType type = defaultObjectMapper().getTypeFactory().constructParametricType(JsonApiRestResponseWrapper.class, resourceClassType);
-                JsonApiRestResponseWrapper<T> element = defaultObjectMapper().readValue(response.getEntity().getContent(), type);
-                returnValue = element.getData();
-            }
-
-            if(ContentType.create("text/markdown").isSameMimeType(contentType)){
-                try(InputStreamReader inputStreamReader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8);
-                    BufferedReader bufferedReader = new BufferedReader(inputStreamReader)){
-                        returnValue = (T) bufferedReader
-                                .lines()
-                                .collect(Collectors.joining("\n"));
-                }
+        if(ContentType.APPLICATION_JSON.isSameMimeType(contentType) || contentType == null) {
+            JsonApiRestResponseWrapper<T> element = JsonCodec.responseReader(resourceClassType).readValue(body, 0, length);
+            returnValue = element.getData();
+        }
+
+        if(ContentType.create("text/markdown").isSameMimeType(contentType)){
+            try(InputStreamReader inputStreamReader = new InputStreamReader(new ByteArrayInputStream(body, 0, length), StandardCharsets.UTF_8);
+                BufferedReader bufferedReader = new BufferedReader(inputStreamReader)){
+                    returnValue = (T) bufferedReader
+                            .lines()
+                            .collect(Collectors.joining("\n"));
             }
-        } finally {
-            response.close();
         }
 
         return returnValue;
     }
 
+    /**
+     * The largest response body read into memory, see {@link ResponseBody}. Without a configuration there is no limit.
+     */
+    protected long maxResponseBodyBytes() {
+        return configuration.isPresent() ? configuration.get().getMaxResponseBodyBytes() : 0;
+    }
+
     protected String defaultAuthorizationHeaderValue(){
         if(getApiToken().isPresent()){
             return getApiToken().get();
@@ -0,0 +1,130 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.CircuitOpenException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Failure state of one host, shared by all clients with an equal configuration.
+ *
+ * After the configured number of failures in a row the circuit opens and requests to the host fail at once with
+ * {@link CircuitOpenException}. Once the open period has passed a single request is let through, closing the
+ * circuit if it succeeds and opening it again if it fails.
+ */
+public final class CircuitBreaker {
+    private static final Map<RestClientConfiguration, Map<String, CircuitBreaker>> breakers = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int failures;
+    private long openUntil;
+    private boolean probing;
+
+    private CircuitBreaker(String host, int failureThreshold, long openMillis) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * The breaker for the host, or null if the configuration disables circuit breaking.
+     */
+    static CircuitBreaker forHost(RestClientConfiguration configuration, String host) {
+        if(configuration == null || configuration.getCircuitBreakerFailureThreshold() <= 0) {
+            return null;
+        }
+
+        return breakers
+                .computeIfAbsent(configuration.sharedKey(), key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(host, key -> new CircuitBreaker(key, configuration.getCircuitBreakerFailureThreshold(), configuration.getCircuitBreakerOpenMillis()));
+    }
+
+    /**
+     * Closes all circuits.
+     */
+    public static void clear() {
+        breakers.clear();
+    }
+
+    /**
+     * Fails if the circuit is open. After the open period the first caller is let through as a probe.
+     */
+    void acquire() throws CircuitOpenException {
+        lock.lock();
+        try {
+            if(failures < failureThreshold) {
+                return;
+            }
+
+            if(System.currentTimeMillis() < openUntil || probing) {
+                throw new CircuitOpenException(String.format(
+                        "Circuit open for %s after %s failures in a row",
+                        host,
+                        failures
+                ));
+            }
+
+            probing = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSuccess() {
+        lock.lock();
+        try {
+            failures = 0;
+            probing = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The request was given up by the caller and says nothing about the host, a probe is let through again.
+     */
+    void onCancelled() {
+        lock.lock();
+        try {
+            probing = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onFailure() {
+        lock.lock();
+        try {
+            failures++;
+            probing = false;
+
+            if(failures >= failureThreshold) {
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.ResponseTooLargeException;
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression of request bodies and decompression of response bodies.
+ *
+ * Request bodies are compressed while they are written, so the compressed entity is sent chunked and is repeatable
+ * if the body is. Bodies smaller than the threshold of the configuration are sent as they are, since the gzip header
+ * and the extra work outweigh the few bytes saved. For a repeatable body of unknown length, such as a
+ * {@link JsonEntity}, at most the threshold is written into a buffer before the headers are sent. A body that fits
+ * is sent from the buffer with a Content-Length, a larger body is written again through gzip. Other bodies of
+ * unknown length are always compressed.
+ */
+public final class Compression {
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Compression() {
+    }
+
+    /**
+     * True if the configuration compresses bodies of the given length.
+     */
+    static boolean shouldCompress(RestClientConfiguration configuration, long length) {
+        return configuration != null
+                && configuration.isCompressRequests()
+                && length >= configuration.getCompressionThresholdBytes();
+    }
+
+    /**
+     * The entity gzip compressed with Content-Encoding set, or the entity itself if it is not compressed.
+     */
+    static HttpEntity compress(HttpEntity entity, RestClientConfiguration configuration) throws IOException {
+        if(entity == null || entity.getContentEncoding() != null) {
+            return entity;
+        }
+
+        if(configuration == null || !configuration.isCompressRequests()) {
+            return entity;
+        }
+
+        long length = entity.getContentLength();
+
+        if(length < 0 && entity.isRepeatable()) {
+            return new ThresholdEntity(entity, configuration.getCompressionThresholdBytes());
+        }
+
+        if(length >= 0 && !shouldCompress(configuration, length)) {
+            return entity;
+        }
+
+        return new GzipEntity(entity);
+    }
+
+    static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed, BUFFER_SIZE)) {
+            outputStream.write(body);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * The decompressed body, failing with {@link ResponseTooLargeException} once it passes the maximum. A maximum of
+     * zero or less decompresses any size.
+     */
+    static byte[] gunzip(byte[] body, long maxBytes) throws IOException {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(Math.max(64, body.length * 4));
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body), BUFFER_SIZE)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if(maxBytes > 0 && decompressed.size() + (long) read > maxBytes) {
+                    throw new ResponseTooLargeException("Response body exceeds " + maxBytes + " bytes");
+                }
+
+                decompressed.write(buffer, 0, read);
+            }
+        }
+
+        return decompressed.toByteArray();
+    }
+
+    /**
+     * Entity compressing the wrapped entity into the connection as it is written.
+     */
+    private static final class GzipEntity extends AbstractHttpEntity {
+        private final HttpEntity entity;
+
+        private GzipEntity(HttpEntity entity) {
+            super(entity.getContentType() != null ? ContentType.parse(entity.getContentType()) : null, GZIP, true);
+            this.entity = entity;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return entity.isRepeatable();
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            writeTo(compressed);
+            return new ByteArrayInputStream(compressed.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+            entity.writeTo(gzipOutputStream);
+            gzipOutputStream.finish();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return entity.isStreaming();
+        }
+
+        @Override
+        public void close() throws IOException {
+            entity.close();
+        }
+    }
+
+    /**
+     * Repeatable entity of unknown length that is sent gzip compressed only if it reaches the threshold. The
+     * first time the headers ask for the length or encoding, the body is written into a buffer until it passes the
+     * threshold. A body that fits is sent from the buffer, a longer body is written again through gzip.
+     */
+    private static final class ThresholdEntity implements HttpEntity {
+        private final HttpEntity entity;
+        private final int threshold;
+
+        private boolean measured;
+        private byte[] body;
+
+        private ThresholdEntity(HttpEntity entity, int threshold) {
+            this.entity = entity;
+            this.threshold = threshold;
+        }
+
+        /**
+         * The body if it's shorter than the threshold, null if it's compressed.
+         */
+        private byte[] body() {
+            if(!measured) {
+                BoundedOutputStream buffer = new BoundedOutputStream(threshold);
+
+                try {
+                    entity.writeTo(buffer);
+                    body = buffer.toByteArray();
+                } catch (IOException e) {
+                    // Past the threshold, or failed and failing again when it's written
+                    body = null;
+                }
+
+                measured = true;
+            }
+
+            return body;
+        }
+
+        @Override
+        public long getContentLength() {
+            return body() != null ? body.length : -1;
+        }
+
+        @Override
+        public String getContentType() {
+            return entity.getContentType();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return body() != null ? null : GZIP;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return body() == null;
+        }
+
+        @Override
+        public Set<String> getTrailerNames() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if(body() != null) {
+                return new ByteArrayInputStream(body);
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            writeTo(compressed);
+            return new ByteArrayInputStream(compressed.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            if(body() != null) {
+                outputStream.write(body);
+                return;
+            }
+
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+            entity.writeTo(gzipOutputStream);
+            gzipOutputStream.finish();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+
+        @Override
+        public Supplier<List<? extends Header>> getTrailers() {
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            entity.close();
+        }
+    }
+
+    /**
+     * Buffer failing with an IOException once the limit or more is written to it, matching the threshold at which
+     * bodies of known length are compressed.
+     */
+    private static final class BoundedOutputStream extends OutputStream {
+        private final ByteArrayOutputStream buffer;
+        private final int limit;
+
+        private BoundedOutputStream(int limit) {
+            this.buffer = new ByteArrayOutputStream(Math.max(64, Math.min(limit, BUFFER_SIZE)));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            check(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check(len);
+            buffer.write(b, off, len);
+        }
+
+        private void check(int len) throws IOException {
+            if(len > 0 && (long) buffer.size() + len >= limit) {
+                throw new IOException("Body of " + limit + " bytes or more");
+            }
+        }
+
+        private byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * True if the Content-Encoding header is gzip.
+     */
+    static boolean isGzip(Header contentEncoding) {
+        return contentEncoding != null
+                && contentEncoding.getValue() != null
+                && (GZIP.equalsIgnoreCase(contentEncoding.getValue().trim()) || "x-gzip".equalsIgnoreCase(contentEncoding.getValue().trim()));
+    }
+}
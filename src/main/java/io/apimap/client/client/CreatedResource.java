@@ -0,0 +1,103 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.apimap.client.client.query.ApiQuery;
+import io.apimap.client.client.query.LinkResolver;
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.IOException;
+
+/**
+ * The resource returned by a POST, and the url the query that was looking for it continues from.
+ */
+final class CreatedResource<T> {
+    private final T content;
+    private final String link;
+    private final String self;
+
+    CreatedResource(T content, String link) {
+        this(content, link, null);
+    }
+
+    CreatedResource(T content, String link, String self) {
+        this.content = content;
+        this.link = link;
+        this.self = self;
+    }
+
+    T getContent() {
+        return content;
+    }
+
+    /**
+     * The url to continue from, null if the query has to be performed again.
+     */
+    String getLink() {
+        return link;
+    }
+
+    /**
+     * The url of the created resource itself, null if the response has neither a self link nor a Location header.
+     */
+    String getSelf() {
+        return self;
+    }
+
+    /**
+     * Reads the url the query continues from out of the response to the create, see
+     * {@link ApiQuery#urlFromCreated(JsonParser, String)}. The location is the resolved Location header or null.
+     */
+    static String link(byte[] body, int length, ContentType contentType, ApiQuery query, String location) throws IOException {
+        if(query == null) {
+            return null;
+        }
+
+        if(body == null || (!ContentType.APPLICATION_JSON.isSameMimeType(contentType) && contentType != null)) {
+            return query.urlFromCreated(null, location);
+        }
+
+        try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(body, 0, length)) {
+            return query.urlFromCreated(parser, location);
+        }
+    }
+
+    /**
+     * Reads the self link of the created resource out of the response to the create, falling back to the location.
+     */
+    static String self(byte[] body, int length, ContentType contentType, String location) throws IOException {
+        if(body == null || (!ContentType.APPLICATION_JSON.isSameMimeType(contentType) && contentType != null)) {
+            return location;
+        }
+
+        try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(body, 0, length)) {
+            String self = LinkResolver.createdLink(parser);
+            return self != null ? self : location;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CreatedResource{" +
+                "content=" + content +
+                ", link='" + link + '\'' +
+                ", self='" + self + '\'' +
+                '}';
+    }
+}
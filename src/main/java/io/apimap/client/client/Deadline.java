@@ -0,0 +1,70 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.exception.OperationTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time left of an operation, shared by every request it sends: zeroconf, token, each traversal hop and the
+ * final request. Each request is limited to the remaining time.
+ */
+public final class Deadline {
+    private final long timeoutMillis;
+    private final long expiresAt;
+
+    private Deadline(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * A deadline the given time from now, or null if the timeout is zero or less.
+     */
+    public static Deadline after(long timeoutMillis) {
+        return timeoutMillis > 0 ? new Deadline(timeoutMillis) : null;
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    /**
+     * Fails if no time is left for the next request.
+     */
+    public void check() throws OperationTimeoutException {
+        if(isExpired()) {
+            throw new OperationTimeoutException(String.format(
+                    "Operation timed out after %s ms",
+                    timeoutMillis
+            ));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{" +
+                "timeoutMillis=" + timeoutMillis +
+                ", remainingMillis=" + remainingMillis() +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Zeroconf endpoints shared by all clients, keyed by zeroconf URL.
+ *
+ * Entries are refreshed in the background once they pass {@link #REFRESH_AHEAD_FACTOR} of their time to live,
+ * and an expired entry is still returned if the zeroconf endpoint can't be reached.
+ */
+public final class EndpointCache {
+    private static final double REFRESH_AHEAD_FACTOR = 0.8;
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<BaseRestClient.Endpoints>> pending = new ConcurrentHashMap<>();
+
+    private static final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "apimap-endpoint-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    interface EndpointLoader {
+        BaseRestClient.Endpoints load() throws IOException;
+    }
+
+    private static class Entry {
+        private final BaseRestClient.Endpoints endpoints;
+        private final long fetchedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        Entry(BaseRestClient.Endpoints endpoints) {
+            this.endpoints = endpoints;
+            this.fetchedAt = System.nanoTime();
+        }
+
+        long age() {
+            return System.nanoTime() - fetchedAt;
+        }
+    }
+
+    private EndpointCache() {
+    }
+
+    /**
+     * Returns the cached endpoints for the zeroconf URL, using the loader when there is no usable entry.
+     * A time to live of zero or less disables the cache.
+     */
+    static BaseRestClient.Endpoints get(String zeroconfURL, long ttlSeconds, EndpointLoader loader) throws IOException {
+        if(ttlSeconds <= 0) {
+            return loader.load();
+        }
+
+        long ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Entry entry = entries.get(zeroconfURL);
+
+        if(entry != null && entry.age() < ttl) {
+            if(entry.age() >= ttl * REFRESH_AHEAD_FACTOR) {
+                refreshAsync(zeroconfURL, entry, loader);
+            }
+            return entry.endpoints;
+        }
+
+        ReentrantLock lock = locks.computeIfAbsent(zeroconfURL, key -> new ReentrantLock());
+        lock.lock();
+
+        try {
+            Entry current = entries.get(zeroconfURL);
+            if(current != null && current != entry && current.age() < ttl) {
+                return current.endpoints;
+            }
+
+            try {
+                BaseRestClient.Endpoints endpoints = loader.load();
+                entries.put(zeroconfURL, new Entry(endpoints));
+                return endpoints;
+            } catch (IOException | RuntimeException e) {
+                if(current != null) {
+                    return current.endpoints;
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking version of {@link #get(String, long, EndpointLoader)}. Concurrent callers share a single request
+     * to the zeroconf endpoint.
+     */
+    static CompletableFuture<BaseRestClient.Endpoints> getAsync(String zeroconfURL, long ttlSeconds, Supplier<CompletableFuture<BaseRestClient.Endpoints>> loader) {
+        if(ttlSeconds <= 0) {
+            return loader.get();
+        }
+
+        long ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Entry entry = entries.get(zeroconfURL);
+
+        if(entry != null && entry.age() < ttl) {
+            if(entry.age() >= ttl * REFRESH_AHEAD_FACTOR && entry.refreshing.compareAndSet(false, true)) {
+                loader.get().whenComplete((endpoints, error) -> {
+                    if(error == null) {
+                        entries.replace(zeroconfURL, entry, new Entry(endpoints));
+                    }
+                    entry.refreshing.set(false);
+                });
+            }
+            return CompletableFuture.completedFuture(entry.endpoints);
+        }
+
+        CompletableFuture<BaseRestClient.Endpoints> created = new CompletableFuture<>();
+        CompletableFuture<BaseRestClient.Endpoints> existing = pending.putIfAbsent(zeroconfURL, created);
+
+        if(existing != null) {
+            return existing;
+        }
+
+        loader.get().whenComplete((endpoints, error) -> {
+            if(error == null) {
+                entries.put(zeroconfURL, new Entry(endpoints));
+            }
+
+            pending.remove(zeroconfURL, created);
+
+            if(error == null) {
+                created.complete(endpoints);
+            } else if(entry != null) {
+                created.complete(entry.endpoints);
+            } else {
+                created.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+
+        return created;
+    }
+
+    /**
+     * Removes the cached endpoints for the zeroconf URL.
+     */
+    public static void invalidate(String zeroconfURL) {
+        entries.remove(zeroconfURL);
+    }
+
+    /**
+     * Removes all cached endpoints.
+     */
+    public static void clear() {
+        entries.clear();
+    }
+
+    private static void refreshAsync(String zeroconfURL, Entry entry, EndpointLoader loader) {
+        if(!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        refreshExecutor.execute(() -> {
+            try {
+                entries.replace(zeroconfURL, entry, new Entry(loader.load()));
+            } catch (Exception ignored) {
+                // Keep serving the current entry, the next caller after expiry retries synchronously
+            } finally {
+                entry.refreshing.set(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,349 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hedged GET requests, shared by all clients with an equal configuration.
+ *
+ * If a GET has not been answered after the hedge delay, a second identical request is sent. The first response
+ * is used and the other request is cancelled. Both are sent as copies of the caller's request, which is never
+ * cancelled and can be sent again, e.g. for a retry. The requests run on at most as many threads as the
+ * configuration has pooled connections, a GET sent while all of them are busy is not hedged. The delay is either the configured one or the observed p95 latency
+ * of the URL. Every GET adds the budget percentage of a hedge to a bucket and every hedge takes a whole one out,
+ * so hedges never exceed that share of the requests.
+ */
+public final class HedgePolicy {
+    private static final int SAMPLES = 32;
+    private static final int MIN_SAMPLES = 8;
+    private static final int MAX_TRACKED_URLS = 1024;
+    private static final long HEDGE_COST = 100;
+    private static final long MAX_BUDGET = 10 * HEDGE_COST;
+
+    private static final Map<RestClientConfiguration, HedgePolicy> policies = new ConcurrentHashMap<>();
+
+    private final ExecutorService hedgeExecutor;
+    private final long delayMillis;
+    private final long budgetPerRequest;
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final ReentrantLock latenciesLock = new ReentrantLock();
+    private final Map<String, Latencies> latencies = new LinkedHashMap<String, Latencies>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Latencies> eldest) {
+            return size() > MAX_TRACKED_URLS;
+        }
+    };
+
+    /**
+     * The latest response times of one URL.
+     */
+    private static final class Latencies {
+        private final long[] samples = new long[SAMPLES];
+        private final ReentrantLock lock = new ReentrantLock();
+        private int count;
+
+        void add(long millis) {
+            lock.lock();
+            try {
+                samples[count % SAMPLES] = millis;
+                count++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long p95() {
+            long[] sorted;
+
+            lock.lock();
+            try {
+                if(count < MIN_SAMPLES) {
+                    return -1;
+                }
+
+                sorted = Arrays.copyOf(samples, Math.min(count, SAMPLES));
+            } finally {
+                lock.unlock();
+            }
+
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+    }
+
+    private HedgePolicy(long delayMillis, int budgetPercent, int maxThreads) {
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Math.max(2, maxThreads), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "apimap-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.delayMillis = delayMillis;
+        this.budgetPerRequest = Math.max(0, budgetPercent);
+    }
+
+    /**
+     * The policy for the configuration, or null if the configuration does not hedge requests.
+     */
+    static HedgePolicy forConfiguration(RestClientConfiguration configuration) {
+        if(configuration == null || !configuration.isHedgeRequests() || configuration.getHedgeBudgetPercent() <= 0) {
+            return null;
+        }
+
+        return policies.computeIfAbsent(configuration.sharedKey(), key -> new HedgePolicy(key.getHedgeDelayMillis(), key.getHedgeBudgetPercent(), key.getMaxConnectionsTotal()));
+    }
+
+    /**
+     * Number of hedged requests sent with the configuration.
+     */
+    public static long hedges(RestClientConfiguration configuration) {
+        HedgePolicy policy = configuration != null ? policies.get(configuration.sharedKey()) : null;
+        return policy != null ? policy.hedges.get() : 0;
+    }
+
+    /**
+     * Removes all recorded latencies, budgets and counters.
+     */
+    public static void clear() {
+        policies.clear();
+    }
+
+    /**
+     * Sends the GET, and a hedge of it if it is slow and the budget allows.
+     */
+    CloseableHttpResponse execute(HttpUriRequestBase request, CloseableHttpClient client) throws IOException {
+        String url = url(request);
+        long delay = delayMillis > 0 ? delayMillis : latencies(url).p95();
+
+        budget.updateAndGet(current -> Math.min(MAX_BUDGET, current + budgetPerRequest));
+
+        if(delay < 0) {
+            // Nothing known about the URL yet
+            return timed(url, request, client);
+        }
+
+        HttpUriRequestBase original = copy(request);
+        CompletableFuture<CloseableHttpResponse> primary;
+
+        try {
+            primary = submit(url, original, client);
+        } catch (RejectedExecutionException e) {
+            // Every hedge thread is busy, send the request without a hedge
+            return timed(url, request, client);
+        }
+
+        try {
+            return primary.get(Math.max(1, delay), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slow response, hedge it below
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            original.cancel();
+            abandon(primary);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        }
+
+        if(!takeHedge()) {
+            return await(primary, original, null);
+        }
+
+        HttpUriRequestBase hedge = copy(request);
+        CompletableFuture<CloseableHttpResponse> secondary;
+
+        try {
+            secondary = submit(url, hedge, client);
+        } catch (RejectedExecutionException e) {
+            return await(primary, original, null);
+        }
+
+        hedges.incrementAndGet();
+
+        CompletableFuture<CloseableHttpResponse> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        primary.whenComplete((response, error) -> complete(first, response, error, hedge, failures));
+        secondary.whenComplete((response, error) -> complete(first, response, error, original, failures));
+
+        return await(first, original, hedge);
+    }
+
+    private boolean takeHedge() {
+        while (true) {
+            long current = budget.get();
+
+            if(current < HEDGE_COST) {
+                return false;
+            }
+
+            if(budget.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Completes with the first response and cancels the other request. Fails only if both requests failed.
+     */
+    private static void complete(CompletableFuture<CloseableHttpResponse> first, CloseableHttpResponse response, Throwable error, HttpUriRequestBase other, AtomicInteger failures) {
+        if(error == null) {
+            if(first.complete(response)) {
+                other.cancel();
+            } else {
+                release(response);
+            }
+        } else if(failures.incrementAndGet() == 2) {
+            first.completeExceptionally(error);
+        }
+    }
+
+    private static CloseableHttpResponse await(CompletableFuture<CloseableHttpResponse> future, HttpUriRequestBase request, HttpUriRequestBase hedge) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            request.cancel();
+            if(hedge != null) {
+                hedge.cancel();
+            }
+            abandon(future);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        }
+    }
+
+    /**
+     * Releases the response no one waits for anymore once it arrives, in case it completed before the cancel.
+     */
+    private static void abandon(CompletableFuture<CloseableHttpResponse> future) {
+        future.whenComplete((response, error) -> release(response));
+    }
+
+    private CompletableFuture<CloseableHttpResponse> submit(String url, HttpUriRequestBase request, CloseableHttpClient client) {
+        CompletableFuture<CloseableHttpResponse> future = new CompletableFuture<>();
+
+        hedgeExecutor.execute(() -> {
+            try {
+                future.complete(timed(url, request, client));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    private CloseableHttpResponse timed(String url, HttpUriRequestBase request, CloseableHttpClient client) throws IOException {
+        long started = System.nanoTime();
+        CloseableHttpResponse response = client.execute(request);
+
+        if(!request.isCancelled()) {
+            latencies(url).add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+
+        return response;
+    }
+
+    private Latencies latencies(String url) {
+        latenciesLock.lock();
+        try {
+            return latencies.computeIfAbsent(url, key -> new Latencies());
+        } finally {
+            latenciesLock.unlock();
+        }
+    }
+
+    private static HttpUriRequestBase copy(HttpUriRequestBase request) throws IOException {
+        try {
+            HttpGet copy = new HttpGet(request.getUri());
+
+            for (Header header : request.getHeaders()) {
+                copy.addHeader(header);
+            }
+
+            copy.setConfig(request.getConfig());
+
+            return copy;
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String url(HttpUriRequestBase request) throws IOException {
+        try {
+            return request.getUri().toString();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+
+        if(cause instanceof IOException) {
+            return (IOException) cause;
+        }
+
+        if(cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+
+        return new IOException(cause);
+    }
+
+    private static void release(CloseableHttpResponse response) {
+        if(response == null) return;
+
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (Exception ignored) {
+        }
+
+        try {
+            response.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequestInterceptor;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, pooled http clients keyed by configuration.
+ *
+ * All RestClient and AsyncRestClient instances created with an equal configuration use the same client, so connections
+ * to the zeroconf, orchestra and API hosts are kept alive and reused between operations. The clients
+ * stay open until {@link #close(RestClientConfiguration)} or {@link #closeAll()} is called.
+ */
+public final class HttpClientRegistry {
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private static final RestClientConfiguration DEFAULT_CONFIGURATION = new RestClientConfiguration();
+    private static final TimeValue IDLE_CONNECTION_TIMEOUT = TimeValue.ofMinutes(1);
+
+    private static final Map<RestClientConfiguration, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+    private static final Map<RestClientConfiguration, CloseableHttpAsyncClient> asyncClients = new ConcurrentHashMap<>();
+
+    // Requests sent outside an operation of a RestClient, or by the async client, get an id of their own
+    private static final HttpRequestInterceptor requestIdInterceptor = (request, entity, context) -> {
+        if(!request.containsHeader(REQUEST_ID_HEADER)) {
+            request.setHeader(REQUEST_ID_HEADER, UUID.randomUUID().toString());
+        }
+    };
+
+    private HttpClientRegistry() {
+    }
+
+    /**
+     * Returns the shared client for the configuration, creating it on first use.
+     * The configuration is frozen by the first call, see {@link RestClientConfiguration#sharedKey()}.
+     */
+    public static CloseableHttpClient getClient(RestClientConfiguration configuration) {
+        return clients.computeIfAbsent(
+                configuration != null ? configuration.sharedKey() : DEFAULT_CONFIGURATION,
+                HttpClientRegistry::createClient
+        );
+    }
+
+    /**
+     * Returns the shared, started async client for the configuration, creating it on first use.
+     */
+    public static CloseableHttpAsyncClient getAsyncClient(RestClientConfiguration configuration) {
+        return asyncClients.computeIfAbsent(
+                configuration != null ? configuration.sharedKey() : DEFAULT_CONFIGURATION,
+                HttpClientRegistry::createAsyncClient
+        );
+    }
+
+    /**
+     * Closes the shared clients for the configuration. New clients are created if the configuration is used again.
+     */
+    public static void close(RestClientConfiguration configuration) {
+        RestClientConfiguration key = configuration != null ? configuration.sharedKey() : DEFAULT_CONFIGURATION;
+
+        CloseableHttpClient client = clients.remove(key);
+        if(client != null) {
+            client.close(CloseMode.GRACEFUL);
+        }
+
+        CloseableHttpAsyncClient asyncClient = asyncClients.remove(key);
+        if(asyncClient != null) {
+            asyncClient.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    /**
+     * Closes all shared clients.
+     */
+    public static void closeAll() {
+        for (RestClientConfiguration configuration : clients.keySet()) {
+            close(configuration);
+        }
+
+        for (RestClientConfiguration configuration : asyncClients.keySet()) {
+            close(configuration);
+        }
+    }
+
+    private static CloseableHttpClient createClient(RestClientConfiguration configuration) {
+        Map<HttpRoute, Integer> routeLimits = routeLimits(configuration);
+
+        // The strict pool guards leases with a ReentrantLock, which doesn't pin a virtual thread's carrier
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setMaxConnTotal(configuration.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(configuration.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(connectionConfig(configuration))
+                .build();
+
+        routeLimits.forEach(connectionManager::setMaxPerRoute);
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(configuration))
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT)
+                .addRequestInterceptorFirst(requestIdInterceptor);
+
+        // The classic client sends Accept-Encoding and decompresses responses unless this is disabled
+        if(!configuration.isDecompressResponses()) {
+            builder.disableContentCompression();
+        }
+
+        return builder.build();
+    }
+
+    private static CloseableHttpAsyncClient createAsyncClient(RestClientConfiguration configuration) {
+        Map<HttpRoute, Integer> routeLimits = routeLimits(configuration);
+
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(configuration.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(configuration.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(connectionConfig(configuration))
+                .build();
+
+        routeLimits.forEach(connectionManager::setMaxPerRoute);
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(configuration))
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT)
+                .addRequestInterceptorFirst(requestIdInterceptor)
+                .build();
+
+        client.start();
+
+        return client;
+    }
+
+    private static Map<HttpRoute, Integer> routeLimits(RestClientConfiguration configuration) {
+        Map<HttpRoute, Integer> limits = new LinkedHashMap<>();
+        configuration.getMaxConnectionsPerHost().forEach((url, max) -> limits.put(route(url), max));
+        return limits;
+    }
+
+    /**
+     * The direct route to the host of the url, with the default port of the scheme if the url has none.
+     */
+    static HttpRoute route(String url) {
+        URI uri = URI.create(url);
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "http";
+        boolean secure = "https".equals(scheme);
+        int port = uri.getPort() >= 0 ? uri.getPort() : secure ? 443 : 80;
+
+        if(uri.getHost() == null) {
+            throw new IllegalArgumentException("No host in url " + url);
+        }
+
+        return new HttpRoute(new HttpHost(scheme, uri.getHost(), port), null, secure);
+    }
+
+    private static ConnectionConfig connectionConfig(RestClientConfiguration configuration) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(timeout(configuration.getConnectTimeoutMillis()))
+                .setSocketTimeout(timeout(configuration.getSocketTimeoutMillis()))
+                .build();
+    }
+
+    private static RequestConfig requestConfig(RestClientConfiguration configuration) {
+        return RequestConfig.custom()
+                .setResponseTimeout(timeout(configuration.getResponseTimeoutMillis()))
+                .build();
+    }
+
+    /**
+     * A timeout of zero or less waits forever.
+     */
+    static Timeout timeout(long millis) {
+        return millis > 0 ? Timeout.ofMilliseconds(millis) : Timeout.DISABLED;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.apimap.rest.jsonapi.JsonApiRestRequestWrapper;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ObjectMapper shared by all clients, with readers and writers built once per type.
+ *
+ * Readers and writers are immutable and thread safe. The mapper itself must not be reconfigured after creation,
+ * since that would affect every client in the JVM.
+ */
+public final class JsonCodec {
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
+
+    // Streamed bodies are written to the connection, which is closed by the http client and not by Jackson
+    private static final ObjectWriter requestWriter = objectMapper.writerFor(JsonApiRestRequestWrapper.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final Map<Class<?>, ObjectReader> responseReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private JsonCodec() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Reader for a {@link JsonApiRestResponseWrapper} with data of the given type.
+     */
+    public static ObjectReader responseReader(Class<?> resourceClassType) {
+        return responseReaders.computeIfAbsent(resourceClassType, type -> {
+            JavaType javaType = objectMapper.getTypeFactory().constructParametricType(JsonApiRestResponseWrapper.class, type);
+            return objectMapper.readerFor(javaType);
+        });
+    }
+
+    /**
+     * Reader for a plain type, such as the zeroconf or token responses.
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
+    /**
+     * Writer for the {@link JsonApiRestRequestWrapper} sent as body of PUT and POST requests.
+     */
+    public static ObjectWriter requestWriter() {
+        return requestWriter;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request body serialized by Jackson straight into the connection, without building a String or byte array first.
+ *
+ * The generator writes through Jackson's recycled buffers. The length isn't known until the value is written, so
+ * the body is sent chunked and serialized once per write. The entity is repeatable, a retry serializes the value
+ * again.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+    private static final ContentType APPLICATION_JSON = ContentType.create("application/json");
+
+    private final Object value;
+    private final ObjectWriter writer;
+
+    public JsonEntity(Object value) {
+        this(value, JsonCodec.requestWriter());
+    }
+
+    public JsonEntity(Object value, ObjectWriter writer) {
+        super(APPLICATION_JSON, null, true);
+        this.value = value;
+        this.writer = writer;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Always -1, the body is sent chunked rather than serialized an extra time to count it.
+     */
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ByteArrayInputStream(writer.writeValueAsBytes(value));
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        writer.writeValue(outputStream, value);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.exception.ResponseTooLargeException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.support.AbstractBinResponseConsumer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects an async response into a {@link SimpleHttpResponse}, like the consumer of the http client, but fails
+ * with {@link ResponseTooLargeException} as soon as the Content-Length or the bytes received pass the maximum.
+ */
+final class LimitedResponseConsumer extends AbstractBinResponseConsumer<SimpleHttpResponse> {
+    private static final int INITIAL_SIZE = 8192;
+
+    private final long limit;
+
+    private SimpleHttpResponse response;
+    private ContentType contentType;
+    private ByteArrayOutputStream body;
+
+    /**
+     * A maximum of zero or less reads any size.
+     */
+    LimitedResponseConsumer(long maxBytes) {
+        this.limit = maxBytes > 0 ? maxBytes : Integer.MAX_VALUE - 8;
+    }
+
+    @Override
+    protected void start(HttpResponse response, ContentType contentType) throws IOException {
+        long contentLength = contentLength(response.getFirstHeader(HttpHeaders.CONTENT_LENGTH));
+
+        if(contentLength > limit) {
+            throw tooLarge();
+        }
+
+        this.response = SimpleHttpResponse.copy(response);
+        this.contentType = contentType;
+        this.body = contentType != null ? new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : INITIAL_SIZE) : null;
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+        if(!src.hasRemaining()) {
+            return;
+        }
+
+        if(body == null) {
+            body = new ByteArrayOutputStream(INITIAL_SIZE);
+        }
+
+        if(body.size() + (long) src.remaining() > limit) {
+            throw tooLarge();
+        }
+
+        byte[] chunk = new byte[src.remaining()];
+        src.get(chunk);
+        body.write(chunk, 0, chunk.length);
+    }
+
+    @Override
+    protected SimpleHttpResponse buildResult() {
+        if(body != null) {
+            response.setBody(body.toByteArray(), contentType);
+        }
+
+        return response;
+    }
+
+    @Override
+    public void releaseResources() {
+        body = null;
+    }
+
+    private ResponseTooLargeException tooLarge() {
+        return new ResponseTooLargeException("Response body exceeds " + limit + " bytes");
+    }
+
+    private static long contentLength(Header header) {
+        if(header == null || header.getValue() == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
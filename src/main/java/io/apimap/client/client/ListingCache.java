@@ -0,0 +1,149 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.exception.IncorrectTokenException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Response bodies of the collections and resources read while traversing, shared by the clients of one batch.
+ *
+ * Chains in a batch start with the same hops, so the root document and the API collection are read once for
+ * the whole batch instead of once per chain. The cache lives as long as the batch, a listing is removed when
+ * a resource is created in it. At most maxSize listings are kept, the least recently used are evicted first.
+ */
+public final class ListingCache {
+    private static final int DEFAULT_MAX_SIZE = 256;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, byte[]> listings;
+    private final ReentrantLock[] urlLocks = new ReentrantLock[LOCK_STRIPES];
+
+    interface ListingLoader {
+        byte[] load() throws IOException, IncorrectTokenException;
+    }
+
+    public ListingCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ListingCache(int maxSize) {
+        this.listings = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            urlLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the listing at the url, using the loader if it's not cached. A null listing from the loader is not cached.
+     */
+    byte[] get(String url, ListingLoader loader) throws IOException, IncorrectTokenException {
+        byte[] listing = cached(url);
+
+        if(listing != null) {
+            return listing;
+        }
+
+        ReentrantLock urlLock = urlLock(url);
+        urlLock.lock();
+
+        try {
+            listing = cached(url);
+            if(listing != null) {
+                return listing;
+            }
+
+            listing = loader.load();
+            if(listing != null) {
+                put(url, listing);
+            }
+
+            return listing;
+        } finally {
+            urlLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the listing at the url, the next reader fetches it again. Waits for a load of the url in progress,
+     * so a listing read before the change can't be stored after it.
+     */
+    public void invalidate(String url) {
+        ReentrantLock urlLock = urlLock(url);
+        urlLock.lock();
+
+        try {
+            lock.lock();
+            try {
+                listings.remove(url);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            urlLock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return listings.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] cached(String url) {
+        lock.lock();
+        try {
+            return listings.get(url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String url, byte[] listing) {
+        lock.lock();
+        try {
+            listings.put(url, listing);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock urlLock(String url) {
+        return urlLocks[(url.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    @Override
+    public String toString() {
+        return "ListingCache{" +
+                "size=" + size() +
+                '}';
+    }
+}
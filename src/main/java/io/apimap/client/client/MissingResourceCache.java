@@ -0,0 +1,151 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.query.ApiQuery;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resources recently found missing in a collection, shared by all clients with an equal configuration. Disabled
+ * unless the configuration sets a time to live.
+ *
+ * A chain that is about to create a resource another chain just looked for goes straight to the create instead of
+ * reading the collection again. Creates of the same resource are done one at a time, and the entry is cleared when
+ * the resource is created. A chain that waited for another chain's create reads the collection again instead of
+ * posting it again.
+ */
+public final class MissingResourceCache {
+    private static final int LOCK_STRIPES = 64;
+    private static final int PRUNE_THRESHOLD = 10000;
+
+    private static final Map<RestClientConfiguration, MissingResourceCache> caches = new ConcurrentHashMap<>();
+
+    private final long ttl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    /**
+     * A resource found missing. Each time it's found missing a new entry is recorded.
+     */
+    static final class Entry {
+        private final long recordedAt;
+
+        private Entry() {
+            this.recordedAt = System.nanoTime();
+        }
+    }
+
+    private MissingResourceCache(long ttlMillis) {
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The cache for the configuration, null if it's disabled by a time to live of zero or less.
+     */
+    static MissingResourceCache forConfiguration(RestClientConfiguration configuration) {
+        if(configuration == null || configuration.getMissingCacheTtlMillis() <= 0) {
+            return null;
+        }
+
+        return caches.computeIfAbsent(configuration.sharedKey(), key -> new MissingResourceCache(key.getMissingCacheTtlMillis()));
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public static void clear() {
+        caches.clear();
+    }
+
+    /**
+     * Key of the resource the query looks for in the collection.
+     */
+    static String key(URI collection, ApiQuery query) {
+        return collection + "\n" + query.cacheKey();
+    }
+
+    /**
+     * The entry for the key, null if there is none or it has expired.
+     */
+    Entry get(String key) {
+        Entry entry = entries.get(key);
+
+        if(entry != null && System.nanoTime() - entry.recordedAt >= ttl) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry;
+    }
+
+    boolean isMissing(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Records the resource as missing.
+     */
+    void missing(String key) {
+        prune();
+        entries.put(key, new Entry());
+    }
+
+    /**
+     * Removes the entry when the resource has been created, the next chain reads the collection again.
+     */
+    void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * The lock held while creating the resource with the key. Keys share a fixed number of locks.
+     */
+    ReentrantLock lock(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void prune() {
+        if(entries.size() < PRUNE_THRESHOLD) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.recordedAt >= ttl);
+    }
+
+    @Override
+    public String toString() {
+        return "MissingResourceCache{" +
+                "size=" + entries.size() +
+                '}';
+    }
+}
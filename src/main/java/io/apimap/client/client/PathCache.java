@@ -0,0 +1,97 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.query.ApiQuery;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache from a chain of queries to the URI it resolved to, shared by all clients with an equal configuration.
+ */
+public final class PathCache {
+    private static final Map<RestClientConfiguration, PathCache> caches = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, URI> paths;
+
+    private PathCache(int maxSize) {
+        this.paths = new LinkedHashMap<String, URI>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, URI> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    static PathCache forConfiguration(RestClientConfiguration configuration) {
+        return caches.computeIfAbsent(configuration.sharedKey(), key -> new PathCache(key.getPathCacheSize()));
+    }
+
+    /**
+     * Removes all cached paths.
+     */
+    public static void clear() {
+        caches.clear();
+    }
+
+    /**
+     * Canonical key for a chain of queries starting at the root URL.
+     */
+    static String key(String rootURL, List<ApiQuery> queries) {
+        StringBuilder builder = new StringBuilder(rootURL);
+
+        for (ApiQuery query : queries) {
+            builder.append('\n').append(query.cacheKey());
+        }
+
+        return builder.toString();
+    }
+
+    URI get(String key) {
+        lock.lock();
+        try {
+            return paths.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(String key, URI uri) {
+        lock.lock();
+        try {
+            paths.put(key, uri);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean remove(String key) {
+        lock.lock();
+        try {
+            return paths.remove(key) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.exception.ResponseTooLargeException;
+import org.apache.hc.core5.http.HttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads response bodies into a byte buffer that is kept per thread and reused by the next response.
+ *
+ * A body with a Content-Length is read into a buffer of exactly that size, other bodies grow the buffer as they
+ * arrive. Bodies larger than the maximum fail with {@link ResponseTooLargeException} as soon as the limit is
+ * passed, before the rest is read. Buffers larger than {@link #MAX_POOLED_SIZE} are not kept, so a thread holds
+ * at most that much after a large response.
+ */
+final class ResponseBody {
+    private static final int INITIAL_SIZE = 8192;
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    // A buffer is taken out while in use, so a nested read on the same thread allocates its own
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+
+    interface BodyReader<T> {
+        T read(byte[] body, int length) throws IOException;
+    }
+
+    private ResponseBody() {
+    }
+
+    /**
+     * Reads the body and passes it to the reader. Only the first length bytes of the buffer are the body, and
+     * the buffer must not be used after the reader returns. A maximum of zero or less reads any size.
+     */
+    static <T> T read(HttpEntity entity, long maxBytes, BodyReader<T> reader) throws IOException {
+        long contentLength = entity.getContentLength();
+        long limit = maxBytes > 0 ? Math.min(maxBytes, MAX_ARRAY_SIZE) : MAX_ARRAY_SIZE;
+
+        if(contentLength > limit) {
+            throw tooLarge(limit);
+        }
+
+        byte[] buffer = buffers.get();
+        buffers.set(null);
+
+        if(buffer == null || buffer.length < contentLength) {
+            buffer = new byte[contentLength >= 0 ? (int) contentLength : INITIAL_SIZE];
+        }
+
+        try {
+            int length = 0;
+
+            try (InputStream content = entity.getContent()) {
+                while (true) {
+                    if(length == buffer.length) {
+                        int next = content.read();
+                        if(next == -1) {
+                            break;
+                        }
+
+                        buffer = grow(buffer, limit);
+                        buffer[length++] = (byte) next;
+                    }
+
+                    int read = content.read(buffer, length, buffer.length - length);
+                    if(read == -1) {
+                        break;
+                    }
+
+                    length += read;
+
+                    // A pooled buffer can be larger than the limit
+                    if(length > limit) {
+                        throw tooLarge(limit);
+                    }
+                }
+            }
+
+            return reader.read(buffer, length);
+        } finally {
+            if(buffer.length <= MAX_POOLED_SIZE) {
+                buffers.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * The body as an array of its own, for bodies that are kept after the response is released.
+     */
+    static byte[] toByteArray(HttpEntity entity, long maxBytes) throws IOException {
+        return read(entity, maxBytes, (body, length) -> Arrays.copyOf(body, length));
+    }
+
+    private static byte[] grow(byte[] buffer, long limit) throws ResponseTooLargeException {
+        if(buffer.length >= limit) {
+            throw tooLarge(limit);
+        }
+
+        return Arrays.copyOf(buffer, (int) Math.min(limit, Math.max(INITIAL_SIZE, (long) buffer.length * 2)));
+    }
+
+    private static ResponseTooLargeException tooLarge(long limit) {
+        return new ResponseTooLargeException("Response body exceeds " + limit + " bytes");
+    }
+}
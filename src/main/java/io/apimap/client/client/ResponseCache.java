@@ -0,0 +1,314 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.query.ApiQuery;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Response bodies with their ETag and Last-Modified validators, shared by all clients with an equal configuration.
+ *
+ * A cached response is always revalidated with a conditional request. On 304 Not Modified the cached body is used
+ * instead of downloading it again, and links already resolved from it are reused without parsing. Entries are
+ * evicted least recently used first once the bodies exceed the byte budget of the configuration.
+ */
+public final class ResponseCache {
+    private static final Map<RestClientConfiguration, ResponseCache> caches = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+        private final Map<String, String> links = new ConcurrentHashMap<>();
+
+        private Entry(String etag, String lastModified, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * The link the query resolves to in the body, parsed once per query.
+         */
+        String link(ApiQuery query) throws IOException {
+            String link = links.get(query.cacheKey());
+
+            if(link == null) {
+                try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(body)) {
+                    link = query.urlFromStream(parser);
+                }
+
+                if(link != null) {
+                    links.put(query.cacheKey(), link);
+                }
+            }
+
+            return link;
+        }
+
+        void addConditionalHeaders(HttpRequest request) {
+            if(etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+
+            if(lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+    }
+
+    /**
+     * Counters of a response cache.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long revalidations;
+        private final long bytesSaved;
+        private final int entries;
+        private final long bytes;
+
+        private Statistics(long hits, long misses, long revalidations, long bytesSaved, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.revalidations = revalidations;
+            this.bytesSaved = bytesSaved;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Conditional requests answered with 304 Not Modified, served from the cache.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Cacheable responses downloaded in full, because nothing was cached or the cached response had changed.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Conditional requests sent with the validators of a cached response.
+         */
+        public long getRevalidations() {
+            return revalidations;
+        }
+
+        /**
+         * Body bytes not downloaded because the cached body was still valid.
+         */
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", revalidations=" + revalidations +
+                    ", bytesSaved=" + bytesSaved +
+                    ", entries=" + entries +
+                    ", bytes=" + bytes +
+                    '}';
+        }
+    }
+
+    private ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache for the configuration, or null if the configuration disables it.
+     */
+    static ResponseCache forConfiguration(RestClientConfiguration configuration) {
+        if(configuration == null || configuration.getResponseCacheMaxBytes() <= 0) {
+            return null;
+        }
+
+        return caches.computeIfAbsent(configuration.sharedKey(), key -> new ResponseCache(key.getResponseCacheMaxBytes()));
+    }
+
+    /**
+     * Counters of the cache for the configuration, all zero if nothing has been cached for it.
+     */
+    public static Statistics statistics(RestClientConfiguration configuration) {
+        ResponseCache cache = configuration != null ? caches.get(configuration.sharedKey()) : null;
+
+        if(cache == null) {
+            return new Statistics(0, 0, 0, 0, 0, 0);
+        }
+
+        cache.lock.lock();
+        try {
+            return new Statistics(
+                    cache.hits.get(),
+                    cache.misses.get(),
+                    cache.revalidations.get(),
+                    cache.bytesSaved.get(),
+                    cache.entries.size(),
+                    cache.bytes
+            );
+        } finally {
+            cache.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all cached responses and counters.
+     */
+    public static void clear() {
+        caches.clear();
+    }
+
+    /**
+     * True if the response has a validator and may be stored.
+     */
+    static boolean isCacheable(HttpResponse response) {
+        Header cacheControl = response.getFirstHeader(HttpHeaders.CACHE_CONTROL);
+
+        if(cacheControl != null && cacheControl.getValue() != null && cacheControl.getValue().contains("no-store")) {
+            return false;
+        }
+
+        return response.getFirstHeader(HttpHeaders.ETAG) != null || response.getFirstHeader(HttpHeaders.LAST_MODIFIED) != null;
+    }
+
+    /**
+     * Returns the cached response for the url and adds its validators to the request, or null if nothing is cached.
+     */
+    Entry revalidate(String url, HttpRequest request) {
+        Entry entry;
+
+        lock.lock();
+        try {
+            entry = entries.get(url);
+        } finally {
+            lock.unlock();
+        }
+
+        if(entry != null) {
+            entry.addConditionalHeaders(request);
+            revalidations.incrementAndGet();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Records that the cached entry was still valid.
+     */
+    Entry hit(Entry entry) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(entry.body.length);
+        return entry;
+    }
+
+    /**
+     * Stores the body of a cacheable response, replacing the previous entry for the url.
+     * Returns the new entry, which is not kept if the body is larger than the whole budget.
+     */
+    Entry put(String url, HttpResponse response, byte[] body) {
+        misses.incrementAndGet();
+
+        Entry entry = new Entry(
+                value(response.getFirstHeader(HttpHeaders.ETAG)),
+                value(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)),
+                body
+        );
+
+        lock.lock();
+        try {
+            Entry previous = entries.remove(url);
+            if(previous != null) {
+                bytes -= previous.body.length;
+            }
+
+            if(body.length > maxBytes) {
+                return entry;
+            }
+
+            entries.put(url, entry);
+            bytes += body.length;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return entry;
+    }
+
+    void remove(String url) {
+        lock.lock();
+        try {
+            Entry previous = entries.remove(url);
+            if(previous != null) {
+                bytes -= previous.body.length;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String value(Header header) {
+        return header != null ? header.getValue() : null;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.CircuitOpenException;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLException;
+
+/**
+ * When and how long to wait before a failed request is sent again.
+ *
+ * GET, PUT and DELETE are retried on connection errors and on 429, 500, 502, 503 and 504 responses. POST is only
+ * retried if the connection could not be established, since the server has then not seen the request. The delay
+ * grows exponentially from the initial backoff with random jitter, and a Retry-After header is honored as long as
+ * it does not exceed the maximum backoff.
+ */
+public final class RetryPolicy {
+    private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "GET", "HEAD", "OPTIONS", "PUT", "DELETE"
+    )));
+
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            HttpStatus.SC_TOO_MANY_REQUESTS,
+            HttpStatus.SC_INTERNAL_SERVER_ERROR,
+            HttpStatus.SC_BAD_GATEWAY,
+            HttpStatus.SC_SERVICE_UNAVAILABLE,
+            HttpStatus.SC_GATEWAY_TIMEOUT
+    )));
+
+    private static final RestClientConfiguration DEFAULT_CONFIGURATION = new RestClientConfiguration();
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private RetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    static RetryPolicy forConfiguration(RestClientConfiguration configuration) {
+        RestClientConfiguration source = configuration != null ? configuration : DEFAULT_CONFIGURATION;
+
+        return new RetryPolicy(
+                source.getMaxRetries(),
+                source.getRetryInitialBackoffMillis(),
+                source.getRetryMaxBackoffMillis()
+        );
+    }
+
+    /**
+     * True if the request may be sent again after the exception.
+     */
+    boolean isRetryable(ClassicHttpRequest request, IOException exception, int attempt) {
+        if(attempt >= maxRetries || !isRepeatable(request)) {
+            return false;
+        }
+
+        if(exception instanceof CircuitOpenException
+                || exception instanceof UnknownHostException
+                || exception instanceof SSLException) {
+            return false;
+        }
+
+        return isConnectFailure(exception) || isIdempotent(request);
+    }
+
+    /**
+     * True if the request may be sent again after the response.
+     */
+    boolean isRetryable(ClassicHttpRequest request, HttpResponse response, int attempt) {
+        return attempt < maxRetries
+                && isRepeatable(request)
+                && isIdempotent(request)
+                && RETRYABLE_STATUS_CODES.contains(response.getCode());
+    }
+
+    /**
+     * Milliseconds to wait before the next attempt, or -1 if the server asks for a longer wait than the maximum backoff.
+     */
+    long delayMillis(int attempt, HttpResponse response) {
+        long retryAfter = response != null ? retryAfterMillis(response.getFirstHeader(HttpHeaders.RETRY_AFTER)) : -1;
+
+        if(retryAfter > maxBackoffMillis) {
+            return -1;
+        }
+
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 30));
+        long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+
+        return Math.max(jittered, retryAfter);
+    }
+
+    static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * True if the connection could not be established, meaning the request never reached the server.
+     */
+    static boolean isConnectFailure(IOException exception) {
+        return exception instanceof ConnectException || exception instanceof ConnectTimeoutException;
+    }
+
+    /**
+     * True if the response means the server is down or overloaded, counted as a failure by the {@link CircuitBreaker}.
+     */
+    static boolean isUnavailable(HttpResponse response) {
+        return response.getCode() == HttpStatus.SC_BAD_GATEWAY
+                || response.getCode() == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || response.getCode() == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    private static boolean isIdempotent(ClassicHttpRequest request) {
+        return IDEMPOTENT_METHODS.contains(request.getMethod());
+    }
+
+    private static boolean isRepeatable(ClassicHttpRequest request) {
+        return request.getEntity() == null || request.getEntity().isRepeatable();
+    }
+
+    /**
+     * The Retry-After header in milliseconds, given either as seconds or as an HTTP date. -1 if missing or invalid.
+     */
+    private static long retryAfterMillis(Header header) {
+        if(header == null || header.getValue() == null) {
+            return -1;
+        }
+
+        String value = header.getValue().trim();
+
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+            // Not a number of seconds, try a date
+        }
+
+        try {
+            long at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.MissingAccessTokenException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * JWT tokens shared by all clients, keyed by orchestra URL and account.
+ *
+ * A token is refreshed shortly before it expires. Only one thread requests a new token for a key at a time,
+ * other threads keep using the current token while it is still valid, or wait for the refresh to complete.
+ */
+public final class TokenCache {
+    private static final long REFRESH_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    private static final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    public static class Token {
+        private final String value;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        public Token(String value, long expiresAt) {
+            long now = System.currentTimeMillis();
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.refreshAt = expiresAt - Math.min(REFRESH_MARGIN_MILLIS, Math.max(0, expiresAt - now) / 10);
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        @Override
+        public String toString() {
+            return "Token{" +
+                    "expiresAt=" + expiresAt +
+                    '}';
+        }
+    }
+
+    interface TokenLoader {
+        Token load() throws IOException, MissingAccessTokenException;
+    }
+
+    private TokenCache() {
+    }
+
+    static String key(String url, RestClientConfiguration configuration) {
+        return url + "|" + (configuration != null ? configuration.getAccount() : null);
+    }
+
+    static String get(String key, TokenLoader loader) throws IOException, MissingAccessTokenException {
+        Token token = tokens.get(key);
+        long now = System.currentTimeMillis();
+
+        if(token != null && now < token.refreshAt) {
+            return token.value;
+        }
+
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+
+        if(token != null && now < token.expiresAt) {
+            // Refresh ahead of expiry, somebody else is already doing it
+            if(!lock.tryLock()) {
+                return token.value;
+            }
+        } else {
+            lock.lock();
+        }
+
+        try {
+            Token current = tokens.get(key);
+            if(current != null && current != token && System.currentTimeMillis() < current.refreshAt) {
+                return current.value;
+            }
+
+            try {
+                Token loaded = loader.load();
+                tokens.put(key, loaded);
+                return loaded.value;
+            } catch (IOException | MissingAccessTokenException | RuntimeException e) {
+                if(current != null && System.currentTimeMillis() < current.expiresAt) {
+                    return current.value;
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking version of {@link #get(String, TokenLoader)}. Concurrent callers share a single token request.
+     */
+    static CompletableFuture<String> getAsync(String key, Supplier<CompletableFuture<Token>> loader) {
+        Token token = tokens.get(key);
+        long now = System.currentTimeMillis();
+
+        if(token != null && now < token.refreshAt) {
+            return CompletableFuture.completedFuture(token.value);
+        }
+
+        boolean usable = token != null && now < token.expiresAt;
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = pending.putIfAbsent(key, created);
+
+        if(existing != null) {
+            return usable ? CompletableFuture.completedFuture(token.value) : existing;
+        }
+
+        loader.get().whenComplete((loaded, error) -> {
+            if(error == null) {
+                tokens.put(key, loaded);
+            }
+
+            pending.remove(key, created);
+
+            if(error == null) {
+                created.complete(loaded.value);
+            } else if(usable) {
+                created.complete(token.value);
+            } else {
+                created.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+
+        return usable ? CompletableFuture.completedFuture(token.value) : created;
+    }
+
+    /**
+     * Removes the token if it is the one rejected by the server, a token already replaced by another thread is kept.
+     */
+    static void invalidate(String key, String rejectedToken) {
+        Token token = tokens.get(key);
+
+        if(token != null && token.value.equals(rejectedToken)) {
+            tokens.remove(key, token);
+        }
+    }
+
+    /**
+     * Removes all cached tokens.
+     */
+    public static void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Expiry time of the token in epoch millis, read from the JWT exp claim and falling back to expires_in.
+     */
+    static long expiresAt(String jwt, JsonNode tokenResponse, ObjectMapper objectMapper) {
+        long now = System.currentTimeMillis();
+
+        String[] parts = jwt.split("\\.");
+        if(parts.length >= 2) {
+            try {
+                JsonNode claims = objectMapper.readTree(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+                if(claims != null && claims.hasNonNull("exp")) {
+                    return TimeUnit.SECONDS.toMillis(claims.get("exp").asLong());
+                }
+            } catch (IllegalArgumentException | IOException ignored) {
+                // Not a readable JWT, fall back to the token response
+            }
+        }
+
+        if(tokenResponse != null && tokenResponse.hasNonNull("expires_in")) {
+            return now + TimeUnit.SECONDS.toMillis(tokenResponse.get("expires_in").asLong());
+        }
+
+        return now + DEFAULT_LIFETIME_MILLIS;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.RestClientExecutor;
+import io.apimap.client.client.query.ApiQuery;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.client.exception.MissingAccessTokenException;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Resolves the paths of a batch of clients together, reading each shared hop only once.
+ *
+ * The query chains of the clients are merged into a trie. Every node is read once and its response is used to
+ * resolve the links of all its children, and sibling branches are read in parallel. Resolved paths are stored in
+ * the path cache, so the operations on the clients go straight to their resources.
+ *
+ * With a {@link ListingCache} the listings are read through it, so clients sharing the cache resolve their hops
+ * from the listings read by the plan, also when the path cache is disabled or too small for the batch.
+ *
+ * Create queries are not planned. A chain with a missing resource is left unresolved and traversed by its own
+ * client, which creates the resource.
+ */
+public class TraversalPlanner extends BaseRestClient {
+    private int parallelism;
+
+    private static class Node {
+        private final ApiQuery query;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final List<Integer> chains = new ArrayList<>();
+
+        Node(ApiQuery query) {
+            this.query = query;
+        }
+    }
+
+    public TraversalPlanner(RestClientConfiguration configuration) {
+        super(configuration);
+        this.parallelism = configuration != null ? configuration.getMaxConnectionsPerRoute() : 1;
+    }
+
+    public TraversalPlanner(RestClientConfiguration configuration, CloseableHttpClient httpClient) {
+        this(configuration);
+        this.httpClient = httpClient;
+    }
+
+    public static TraversalPlanner withConfiguration(RestClientConfiguration configuration) {
+        return new TraversalPlanner(configuration);
+    }
+
+    /**
+     * Reads the hops through the listing cache shared with the clients of the batch.
+     */
+    public TraversalPlanner withListingCache(ListingCache listingCache) {
+        setListingCache(listingCache);
+        return this;
+    }
+
+    /**
+     * Maximum number of hops read at the same time, defaults to the connections per route of the configuration.
+     */
+    public TraversalPlanner withParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Resolves the paths of the clients, which must use the same configuration as the planner. Returns the resolved
+     * path of each client in the order of the clients, empty if it could not be resolved.
+     */
+    public List<Optional<URI>> plan(List<? extends BaseRestClient> clients) throws IOException, MissingAccessTokenException {
+        AtomicReferenceArray<URI> paths = new AtomicReferenceArray<>(clients.size());
+
+        if(configuration.isPresent()) {
+            CloseableHttpClient client = defaultCloseableHttpClient();
+            Optional<Endpoints> endpoints = getEndpoints(client);
+
+            if(endpoints.isPresent()) {
+                Optional<AccessToken> jwt = getJwtToken(client, endpoints.get().getOrchestra());
+
+                if(jwt.isPresent()) {
+                    resolve(trie(clients), URI.create(endpoints.get().getApi()), jwt.get(), client, paths);
+                    cachePaths(clients, endpoints.get().getApi(), paths);
+                }
+            }
+        }
+
+        List<Optional<URI>> result = new ArrayList<>(clients.size());
+        for (int i = 0; i < clients.size(); i++) {
+            result.add(Optional.ofNullable(paths.get(i)));
+        }
+
+        return result;
+    }
+
+    private Node trie(List<? extends BaseRestClient> clients) {
+        Node root = new Node(null);
+
+        for (int i = 0; i < clients.size(); i++) {
+            Node node = root;
+
+            for (ApiQuery query : clients.get(i).queries) {
+                if(query.getType() == ApiQuery.TYPE.CREATE_RESOURCE) {
+                    continue;
+                }
+                node = node.children.computeIfAbsent(query.cacheKey(), key -> new Node(query));
+            }
+
+            node.chains.add(i);
+        }
+
+        return root;
+    }
+
+    private void resolve(Node root, URI rootURI, AccessToken jwt, CloseableHttpClient client, AtomicReferenceArray<URI> paths) {
+        try (RestClientExecutor executor = RestClientExecutor.virtualThreads(parallelism)) {
+            visit(root, rootURI, jwt, client, executor, paths).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Failed branches are left unresolved
+        }
+    }
+
+    /**
+     * Reads the node once and continues with every child whose link is found in the response.
+     */
+    private CompletableFuture<Void> visit(Node node, URI uri, AccessToken jwt, CloseableHttpClient client, RestClientExecutor executor, AtomicReferenceArray<URI> paths) {
+        for (Integer chain : node.chains) {
+            paths.set(chain, uri);
+        }
+
+        if(node.children.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return executor.submit(() -> listing(uri, jwt, client))
+                .thenCompose(listing -> {
+                    if(listing == null) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+
+                    List<CompletableFuture<Void>> branches = new ArrayList<>(node.children.size());
+
+                    for (Node child : node.children.values()) {
+                        String url = null;
+
+                        try (JsonParser parser = JsonCodec.objectMapper().getFactory().createParser(listing)) {
+                            url = child.query.urlFromStream(parser);
+                        } catch (IOException e) {
+                            if(isDebugMode()){ System.out.println("[PLANNING] Unable to read response from " + uri); }
+                        }
+
+                        if(url != null) {
+                            branches.add(visit(child, URI.create(url), jwt, client, executor, paths));
+                        }
+                    }
+
+                    return CompletableFuture.allOf(branches.toArray(new CompletableFuture[0]));
+                })
+                .exceptionally(e -> {
+                    if(isDebugMode()){ System.out.println("[PLANNING] Unable to read " + uri + ": " + e.getMessage()); }
+                    return null;
+                });
+    }
+
+    private byte[] listing(URI uri, AccessToken jwt, CloseableHttpClient client) throws IOException, IncorrectTokenException {
+        if(listingCache == null) {
+            return readListing(uri, jwt, client);
+        }
+
+        return listingCache.get(uri.toString(), () -> readListing(uri, jwt, client));
+    }
+
+    private void cachePaths(List<? extends BaseRestClient> clients, String rootURL, AtomicReferenceArray<URI> paths) {
+        if(configuration.get().getPathCacheSize() <= 0) {
+            return;
+        }
+
+        PathCache pathCache = PathCache.forConfiguration(configuration.get());
+
+        for (int i = 0; i < clients.size(); i++) {
+            if(paths.get(i) != null) {
+                pathCache.put(PathCache.key(rootURL, clients.get(i).queries), paths.get(i));
+            }
+        }
+    }
+
+    private boolean isDebugMode() {
+        return configuration.isPresent() && configuration.get().isDebugMode();
+    }
+
+    @Override
+    public String toString() {
+        return "TraversalPlanner{" +
+                "configuration=" + configuration +
+                ", parallelism=" + parallelism +
+                '}';
+    }
+}
@@ -0,0 +1,246 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client;
+
+import io.apimap.client.RestClientConfiguration;
+import org.apache.hc.core5.http.HttpEntity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashes of the last body written to each resolved resource URL, used to skip writes that would not change anything.
+ *
+ * Without a hash file the hashes are kept in memory and shared by all clients with an equal configuration. With a
+ * hash file they are appended to it as one line per write and read back on first use, so later runs, e.g. the next
+ * CI build, skip unchanged writes as well.
+ */
+public final class WriteHashStore {
+    private static final String SEPARATOR = "\t";
+    private static final String REMOVED = "-";
+
+    private static final Map<RestClientConfiguration, WriteHashStore> memoryStores = new ConcurrentHashMap<>();
+    private static final Map<Path, WriteHashStore> fileStores = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    static final class Entry {
+        private final String hash;
+        private final String etag;
+
+        Entry(String hash, String etag) {
+            this.hash = hash;
+            this.etag = etag;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * ETag the server returned for the write, null if it did not send one.
+         */
+        String getEtag() {
+            return etag;
+        }
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private WriteHashStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * The store for the configuration, persisted to its hash file if one is set.
+     */
+    static WriteHashStore forConfiguration(RestClientConfiguration configuration) {
+        if(configuration == null || configuration.getWriteHashFile() == null) {
+            return memoryStores.computeIfAbsent(
+                    configuration != null ? configuration.sharedKey() : new RestClientConfiguration(),
+                    key -> new WriteHashStore(null)
+            );
+        }
+
+        return fileStores.computeIfAbsent(
+                Paths.get(configuration.getWriteHashFile()).toAbsolutePath().normalize(),
+                WriteHashStore::load
+        );
+    }
+
+    /**
+     * Forgets all hashes held in memory. Hash files are left as they are and read again on next use.
+     */
+    public static void clear() {
+        memoryStores.clear();
+        fileStores.clear();
+    }
+
+    /**
+     * Hex encoded SHA-256 of the body, streamed through the digest without holding the body in memory.
+     */
+    static String hash(HttpEntity entity) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        try (OutputStream outputStream = new DigestOutputStream(new DiscardingOutputStream(), digest)) {
+            entity.writeTo(outputStream);
+        }
+
+        StringBuilder hex = new StringBuilder(digest.getDigestLength() * 2);
+
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return hex.toString();
+    }
+
+    Entry get(String url) {
+        return entries.get(url);
+    }
+
+    void put(String url, String hash, String etag) {
+        entries.put(url, new Entry(hash, etag));
+        append(url + SEPARATOR + hash + (etag != null ? SEPARATOR + etag : ""));
+    }
+
+    /**
+     * Forgets the hashes of the deleted resource and of everything below it.
+     */
+    void remove(String url) {
+        String below = url.endsWith("/") ? url : url + "/";
+
+        for (String key : entries.keySet()) {
+            if((key.equals(url) || key.startsWith(below)) && entries.remove(key) != null) {
+                append(key + SEPARATOR + REMOVED);
+            }
+        }
+    }
+
+    private void append(String line) {
+        if(file == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            Files.write(
+                    file,
+                    (line + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND
+            );
+        } catch (IOException ignored) {
+            // The hash stays in memory, the write is repeated by the next run
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the hash file, the last line for a URL wins. The file is rewritten without superseded lines when
+     * they make up most of it.
+     */
+    private static WriteHashStore load(Path file) {
+        WriteHashStore store = new WriteHashStore(file);
+
+        if(!Files.exists(file)) {
+            return store;
+        }
+
+        int lines = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                lines++;
+
+                if(fields.length < 2) {
+                    continue;
+                }
+
+                if(REMOVED.equals(fields[1])) {
+                    store.entries.remove(fields[0]);
+                } else {
+                    store.entries.put(fields[0], new Entry(fields[1], fields.length > 2 ? fields[2] : null));
+                }
+            }
+        } catch (IOException e) {
+            // An unreadable file means every write is sent once and the file is written again
+            store.entries.clear();
+            return store;
+        }
+
+        if(lines > 2 * store.entries.size() + 64) {
+            store.compact();
+        }
+
+        return store;
+    }
+
+    private void compact() {
+        List<String> lines = new ArrayList<>(entries.size());
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            lines.add(entry.getKey() + SEPARATOR + value.hash + (value.etag != null ? SEPARATOR + value.etag : ""));
+        }
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // Keep appending to the uncompacted file
+        }
+    }
+}
@@ -16,8 +16,12 @@ limitations under the License.
 
 package io.apimap.client.client.query;
 
+import com.fasterxml.jackson.core.JsonParser;
+import io.apimap.client.client.JsonCodec;
 import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 
+import java.io.IOException;
+
 public abstract class ApiQuery {
     public enum TYPE {
         CREATE_RESOURCE,
@@ -47,6 +51,27 @@ public abstract class ApiQuery {
 
     public abstract String urlFromContent(JsonApiRestResponseWrapper<?> content);
 
+    /**
+     * Reads the url from a response stream. Queries that only need a single link override this to stop
+     * parsing as soon as it is found, the default reads the complete response.
+     */
+    public String urlFromStream(JsonParser parser) throws IOException {
+        return urlFromContent(JsonCodec.reader(JsonApiRestResponseWrapper.class).readValue(parser));
+    }
+
+    /**
+     * The url to continue from once the resource this query looks for has been created, read from the response
+     * to the create. The parser is null if the response is not JSON, the location is the Location header of the
+     * response or null. Returns null if the query has to be performed again instead.
+     */
+    public String urlFromCreated(JsonParser parser, String location) throws IOException {
+        return null;
+    }
+
+    public String cacheKey() {
+        return type + ":" + key;
+    }
+
     @Override
     public String toString() {
         return "Query{" +
@@ -16,8 +16,10 @@ limitations under the License.
 
 package io.apimap.client.client.query;
 
+import com.fasterxml.jackson.core.JsonParser;
 import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 
@@ -26,6 +28,11 @@ public class CollectionTraversingQuery extends ApiQuery {
         super(TYPE.COLLECTION_TRAVERSING, key);
     }
 
+    @Override
+    public String urlFromStream(JsonParser parser) throws IOException {
+        return LinkResolver.relatedLink(parser, key);
+    }
+
     @Override
     public String urlFromContent(JsonApiRestResponseWrapper<?> content) {
         if(content.getLinks() == null) return null;
@@ -16,35 +16,78 @@ limitations under the License.
 
 package io.apimap.client.client.query;
 
+import com.fasterxml.jackson.core.JsonParser;
 import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 import org.apache.hc.core5.http.ContentType;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class CreateResourceQuery extends ApiQuery {
+    /**
+     * LOOKUP_FIRST reads the hop and creates the resource only if it is missing. CREATE_FIRST posts the resource
+     * without reading the hop, and follows the existing resource if the server responds with 409 Conflict. It saves
+     * the lookup when most resources are new, and costs an extra request when they already exist.
+     */
+    public enum STRATEGY {
+        LOOKUP_FIRST,
+        CREATE_FIRST
+    }
+
     protected Object object;
+    protected Supplier<?> supplier;
     protected Consumer<Object> callback;
+    protected STRATEGY strategy;
     Class resourceClassType;
     ContentType contentType;
 
     public CreateResourceQuery(String key, Object object, Consumer<Object> callback, ContentType contentType) {
+        this(key, object, callback, contentType, STRATEGY.LOOKUP_FIRST);
+    }
+
+    public CreateResourceQuery(String key, Object object, Consumer<Object> callback, ContentType contentType, STRATEGY strategy) {
         super(TYPE.CREATE_RESOURCE, key);
         this.object = object;
         this.callback = callback;
         this.resourceClassType = object.getClass();
         this.contentType = contentType;
+        this.strategy = strategy != null ? strategy : STRATEGY.LOOKUP_FIRST;
+    }
+
+    /**
+     * The object is built by the supplier when the resource is created, and not at all if it already exists.
+     * A null class uses the class of the supplied object.
+     */
+    public <T> CreateResourceQuery(String key, Class<T> resourceClassType, Supplier<? extends T> supplier, Consumer<Object> callback, ContentType contentType, STRATEGY strategy) {
+        super(TYPE.CREATE_RESOURCE, key);
+        this.supplier = supplier;
+        this.callback = callback;
+        this.resourceClassType = resourceClassType;
+        this.contentType = contentType;
+        this.strategy = strategy != null ? strategy : STRATEGY.LOOKUP_FIRST;
     }
 
+    /**
+     * The object to create, built by the supplier on every call if the query has one.
+     */
     public Object getObject() {
-        return object;
+        return supplier != null ? supplier.get() : object;
     }
 
     public Class getResourceClassType() {
         return resourceClassType;
     }
 
+    /**
+     * The class of the created resource, the class of the object if the query was given none.
+     */
+    public Class getResourceClassType(Object object) {
+        return resourceClassType != null || object == null ? resourceClassType : object.getClass();
+    }
+
     public Consumer<Object> getCallback() {
         return callback;
     }
@@ -53,6 +96,15 @@ public class CreateResourceQuery extends ApiQuery {
         return contentType;
     }
 
+    public STRATEGY getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public String urlFromStream(JsonParser parser) throws IOException {
+        return LinkResolver.dataElementLink(parser, key);
+    }
+
     @Override
     public String urlFromContent(JsonApiRestResponseWrapper content) {
         if(content == null) return null;
@@ -75,9 +127,11 @@ public class CreateResourceQuery extends ApiQuery {
     public String toString() {
         return "CreateApiQuery{" +
                 "object=" + object +
+                ", supplier=" + supplier +
                 ", callback=" + callback +
                 ", resourceClassType=" + resourceClassType +
                 ", contentType=" + contentType +
+                ", strategy=" + strategy +
                 ", type=" + type +
                 ", key='" + key + '\'' +
                 '}';
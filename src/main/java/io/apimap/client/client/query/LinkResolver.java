@@ -0,0 +1,223 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.client.query;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Finds a single link in a JSON:API response by walking the token stream, without building the response objects.
+ * Parsing stops as soon as the link is found, everything not on the path to it is skipped.
+ */
+public final class LinkResolver {
+
+    private LinkResolver() {
+    }
+
+    /**
+     * The links.self value of the data element with the given id.
+     */
+    public static String dataElementLink(JsonParser parser, String id) throws IOException {
+        return dataElementLink(parser, id, null);
+    }
+
+    /**
+     * The relationships.{relationship}.links.self value of the data element with the given id.
+     */
+    public static String relationshipLink(JsonParser parser, String id, String relationship) throws IOException {
+        return dataElementLink(parser, id, relationship);
+    }
+
+    /**
+     * The links.self value of the data element in the response to a create, whatever its id.
+     */
+    public static String createdLink(JsonParser parser) throws IOException {
+        return dataElementLink(parser, null, null);
+    }
+
+    /**
+     * The relationships.{relationship}.links.self value of the data element in the response to a create,
+     * whatever its id.
+     */
+    public static String createdRelationshipLink(JsonParser parser, String relationship) throws IOException {
+        return dataElementLink(parser, null, relationship);
+    }
+
+    /**
+     * The href of the entry in links.related with the given rel.
+     */
+    public static String relatedLink(JsonParser parser, String rel) throws IOException {
+        if(!moveToField(parser, "links")) return null;
+        if(parser.nextToken() != JsonToken.START_OBJECT) return null;
+        if(!moveToField(parser, "related")) return null;
+        if(parser.nextToken() != JsonToken.START_ARRAY) return null;
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String currentRel = null;
+            String href = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                if("rel".equals(field) && value == JsonToken.VALUE_STRING) {
+                    currentRel = parser.getText();
+                } else if("href".equals(field) && value == JsonToken.VALUE_STRING) {
+                    href = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+
+                if(currentRel != null && href != null && rel.equals(currentRel)) {
+                    return href;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String dataElementLink(JsonParser parser, String id, String relationship) throws IOException {
+        if(!moveToField(parser, "data")) return null;
+
+        JsonToken token = parser.nextToken();
+
+        if(token == JsonToken.START_OBJECT) {
+            return elementLink(parser, id, relationship);
+        }
+
+        if(token != JsonToken.START_ARRAY) return null;
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String link = elementLink(parser, id, relationship);
+            if(link != null) {
+                return link;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads one data element, positioned at its START_OBJECT. Returns the link if the element has the id, or for
+     * a null id the link of any element, otherwise the parser is left at the element's END_OBJECT.
+     */
+    private static String elementLink(JsonParser parser, String id, String relationship) throws IOException {
+        String currentId = null;
+        String link = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if("id".equals(field) && value == JsonToken.VALUE_STRING) {
+                currentId = parser.getText();
+                if(id != null && !id.equals(currentId)) {
+                    skipRemainingFields(parser);
+                    return null;
+                }
+            } else if(relationship == null && "links".equals(field) && value == JsonToken.START_OBJECT) {
+                link = selfLink(parser);
+            } else if(relationship != null && "relationships".equals(field) && value == JsonToken.START_OBJECT) {
+                link = relationshipSelfLink(parser, relationship);
+            } else {
+                parser.skipChildren();
+            }
+
+            if(currentId != null && link != null) {
+                return link;
+            }
+        }
+
+        return id == null ? link : null;
+    }
+
+    private static String relationshipSelfLink(JsonParser parser, String relationship) throws IOException {
+        String link = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if(relationship.equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String relationshipField = parser.getCurrentName();
+                    JsonToken relationshipValue = parser.nextToken();
+
+                    if("links".equals(relationshipField) && relationshipValue == JsonToken.START_OBJECT) {
+                        link = selfLink(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return link;
+    }
+
+    /**
+     * Reads a links object positioned at its START_OBJECT and returns the self value.
+     */
+    private static String selfLink(JsonParser parser) throws IOException {
+        String link = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if("self".equals(field) && value == JsonToken.VALUE_STRING) {
+                link = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return link;
+    }
+
+    private static void skipRemainingFields(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Moves to the named field of the current object, skipping the values of other fields.
+     * Starts at the root object when the parser has not been read yet.
+     */
+    private static boolean moveToField(JsonParser parser, String name) throws IOException {
+        if(parser.currentToken() == null && parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if(name.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+
+        return false;
+    }
+}
@@ -16,9 +16,11 @@ limitations under the License.
 
 package io.apimap.client.client.query;
 
+import com.fasterxml.jackson.core.JsonParser;
 import io.apimap.rest.jsonapi.JsonApiRelationships;
 import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -35,6 +37,16 @@ public class RelationshipTraversingQuery extends ApiQuery {
         return relationshipId;
     }
 
+    @Override
+    public String urlFromStream(JsonParser parser) throws IOException {
+        return LinkResolver.relationshipLink(parser, relationshipId, key);
+    }
+
+    @Override
+    public String urlFromCreated(JsonParser parser, String location) throws IOException {
+        return parser != null ? LinkResolver.createdRelationshipLink(parser, key) : null;
+    }
+
     @Override
     public String urlFromContent(JsonApiRestResponseWrapper content) {
         if(content == null) return null;
@@ -59,6 +71,11 @@ public class RelationshipTraversingQuery extends ApiQuery {
         return null;
     }
 
+    @Override
+    public String cacheKey() {
+        return super.cacheKey() + ":" + relationshipId;
+    }
+
     public String urlFromEntity(JsonApiRelationships content) {
         if(content == null) return null;
 
@@ -16,8 +16,10 @@ limitations under the License.
 
 package io.apimap.client.client.query;
 
+import com.fasterxml.jackson.core.JsonParser;
 import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -27,6 +29,17 @@ public class ResourceTraversingQuery extends ApiQuery {
         super(TYPE.RESOURCE_TRAVERSING, key);
     }
 
+    @Override
+    public String urlFromStream(JsonParser parser) throws IOException {
+        return LinkResolver.dataElementLink(parser, key);
+    }
+
+    @Override
+    public String urlFromCreated(JsonParser parser, String location) throws IOException {
+        String link = parser != null ? LinkResolver.createdLink(parser) : null;
+        return link != null ? link : location;
+    }
+
     @Override
     public String urlFromContent(JsonApiRestResponseWrapper content) {
         if(content == null) return null;
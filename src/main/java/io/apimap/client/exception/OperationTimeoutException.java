@@ -0,0 +1,34 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package io.apimap.client.exception;
+
+import java.io.InterruptedIOException;
+
+/**
+ * The operation did not complete within the operation timeout of the configuration. No further requests are sent
+ * for it once this is thrown.
+ */
+public class OperationTimeoutException extends InterruptedIOException {
+    public OperationTimeoutException(String message) {
+        super(message);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+package io.apimap.client.exception;
+
+/**
+ * The resource could not be created because it already exists, the server responded with 409 Conflict.
+ */
+public class ResourceConflictException extends IllegalApiContentException {
+    public ResourceConflictException(Throwable cause) {
+        super(cause);
+    }
+
+    public ResourceConflictException(String message) {
+        super(message);
+    }
+
+    public ResourceConflictException() {
+        super();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.AsyncRestClient;
+import io.apimap.client.RestClientConfiguration;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class AsyncRestClientTest {
+    @Test
+    void getResource_missingZeroconf() throws Exception {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+
+        CloseableHttpAsyncClient httpClient = mock(CloseableHttpAsyncClient.class);
+        Consumer<String> errorHandler = mock(Consumer.class);
+
+        AsyncRestClient client = new AsyncRestClient(configuration, httpClient, errorHandler);
+        ApiDataRestEntity result = client.getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON).get();
+
+        assertNull(result);
+        verify(errorHandler, times(1)).accept(any());
+        verifyNoInteractions(httpClient);
+    }
+
+    @Test
+    void deleteResource_dryRun() throws Exception {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setDryRunMode(true);
+
+        CloseableHttpAsyncClient httpClient = mock(CloseableHttpAsyncClient.class);
+
+        AsyncRestClient client = new AsyncRestClient(configuration, httpClient);
+
+        int status = client.deleteResource().get();
+
+        assertEquals(204, status);
+        assertNotNull(client.getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON).get());
+        verifyNoInteractions(httpClient);
+    }
+}
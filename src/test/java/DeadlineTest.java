@@ -0,0 +1,127 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.Deadline;
+import io.apimap.client.exception.ApiRequestFailedException;
+import io.apimap.client.exception.IncorrectTokenException;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeadlineTest {
+
+    @Test
+    void getResource_stopsRetryingWhenOperationTimesOut() throws Exception, IncorrectTokenException {
+        AtomicInteger requests = new AtomicInteger();
+
+        StubApiServer server = new StubApiServer("http://deadline.test");
+        server.get("/api", request -> {
+            requests.incrementAndGet();
+            Thread.sleep(50);
+            return StubApiServer.response(503, new StringEntity("unavailable", ContentType.TEXT_PLAIN));
+        });
+
+        RestClientConfiguration configuration = server.configuration();
+        configuration.setMaxRetries(1000);
+        configuration.setRetryInitialBackoffMillis(1);
+        configuration.setCircuitBreakerFailureThreshold(0);
+        configuration.setOperationTimeoutMillis(300);
+
+        AtomicReference<String> error = new AtomicReference<>();
+        long started = System.currentTimeMillis();
+
+        ApiDataRestEntity resource = new RestClient(configuration, server.httpClient())
+                .withErrorHandler(error::set)
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+
+        assertNull(resource);
+        assertTrue(error.get().contains("timed out"), error.get());
+        assertTrue(System.currentTimeMillis() - started < 2000);
+        assertTrue(requests.get() <= 7, "requests: " + requests.get());
+    }
+
+    @Test
+    void deleteResource_sendsNothingAfterDeadline() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute(any())).thenAnswer(invocation -> {
+            requests.incrementAndGet();
+            return mock(CloseableHttpResponse.class);
+        });
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(new RestClientConfiguration(), httpClient);
+        client.setDeadline(Deadline.after(1));
+
+        Thread.sleep(10);
+
+        assertThrows(ApiRequestFailedException.class,
+                () -> client.deleteResource(new HttpDelete(new URI("http://deadline.test/a"))));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void deleteResource_deadlineDoesNotOpenCircuit() throws Exception, IncorrectTokenException {
+        AtomicInteger requests = new AtomicInteger();
+
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute(any())).thenAnswer(invocation -> {
+            if(requests.incrementAndGet() == 1) {
+                Thread.sleep(100);
+                throw new SocketTimeoutException("Read timed out");
+            }
+
+            CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+            when(response.getCode()).thenReturn(204);
+            return response;
+        });
+
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setApiURL("http://deadline-circuit.test/api");
+        configuration.setMaxRetries(0);
+        configuration.setCircuitBreakerFailureThreshold(1);
+
+        SurrogateBaseRestClient timedOut = new SurrogateBaseRestClient(configuration, httpClient);
+        timedOut.setDeadline(Deadline.after(50));
+
+        assertThrows(ApiRequestFailedException.class,
+                () -> timedOut.deleteResource(new HttpDelete(new URI("http://deadline-circuit.test/a"))));
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration, httpClient);
+
+        assertEquals(204, client.deleteResource(new HttpDelete(new URI("http://deadline-circuit.test/a"))));
+        assertEquals(2, requests.get());
+    }
+}
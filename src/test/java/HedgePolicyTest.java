@@ -0,0 +1,124 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.HedgePolicy;
+import io.apimap.client.exception.IncorrectTokenException;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+public class HedgePolicyTest {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    @Test
+    void getResource_usesHedgeWhenFirstResponseIsSlow() throws Exception, IncorrectTokenException {
+        RestClientConfiguration configuration = configuration("http://hedge.test", 100);
+        CloseableHttpClient httpClient = server("http://hedge.test", 2000, new AtomicInteger());
+
+        long started = System.currentTimeMillis();
+        String readme = new RestClient(configuration, httpClient).getResource(String.class, MARKDOWN);
+
+        assertEquals("readme 2", readme);
+        assertTrue(System.currentTimeMillis() - started < 1500);
+        assertEquals(1, HedgePolicy.hedges(configuration));
+    }
+
+    @Test
+    void getResource_doesNotHedgeBeyondBudget() throws Exception, IncorrectTokenException {
+        RestClientConfiguration configuration = configuration("http://hedge-budget.test", 1);
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server("http://hedge-budget.test", 100, requests);
+
+        for (int i = 0; i < 3; i++) {
+            new RestClient(configuration, httpClient).getResource(String.class, MARKDOWN);
+        }
+
+        assertEquals(0, HedgePolicy.hedges(configuration));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void getResource_releasesResponsesAfterInterrupt() throws Exception, IncorrectTokenException {
+        RestClientConfiguration configuration = configuration("http://hedge-interrupt.test", 100);
+        Queue<CloseableHttpResponse> responses = new ConcurrentLinkedQueue<>();
+
+        StubApiServer server = new StubApiServer("http://hedge-interrupt.test");
+        server.get("/api", request -> {
+            // The mock ignores the cancel, both requests are answered after the caller gave up
+            Thread.sleep(300);
+            CloseableHttpResponse response = StubApiServer.response(200, new StringEntity("readme", MARKDOWN));
+            responses.add(response);
+            return response;
+        });
+
+        Thread caller = new Thread(() -> {
+            try {
+                new RestClient(configuration, server.httpClient()).getResource(String.class, MARKDOWN);
+            } catch (Exception | IncorrectTokenException ignored) {
+            }
+        });
+
+        caller.start();
+        Thread.sleep(150);
+        caller.interrupt();
+        caller.join(2000);
+        Thread.sleep(500);
+
+        assertEquals(2, responses.size());
+        for (CloseableHttpResponse response : responses) {
+            verify(response).close();
+        }
+    }
+
+    private static RestClientConfiguration configuration(String host, int budgetPercent) {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(host + "/token");
+        configuration.setApiURL(host + "/api");
+        configuration.setHedgeRequests(true);
+        configuration.setHedgeDelayMillis(20);
+        configuration.setHedgeBudgetPercent(budgetPercent);
+        return configuration;
+    }
+
+    /**
+     * The first GET to the API takes the given time, later ones are answered at once.
+     */
+    private static CloseableHttpClient server(String host, long firstResponseMillis, AtomicInteger requests) throws Exception {
+        return new StubApiServer(host)
+                .get("/api", request -> {
+                    int count = requests.incrementAndGet();
+
+                    if(count == 1) {
+                        Thread.sleep(firstResponseMillis);
+                    }
+
+                    return StubApiServer.response(200, new StringEntity("readme " + count, MARKDOWN));
+                })
+                .httpClient();
+    }
+}
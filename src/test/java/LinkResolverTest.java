@@ -0,0 +1,69 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.apimap.client.client.query.LinkResolver;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LinkResolverTest {
+    private static final JsonFactory factory = new JsonFactory();
+
+    private static final String RESPONSE = "{" +
+            "\"meta\":{\"size\":2}," +
+            "\"data\":[" +
+                "{\"links\":{\"self\":\"http://localhost/api/first\"},\"id\":\"first\",\"attributes\":{\"codeRepository\":\"git://\"}}," +
+                "{\"id\":\"second\",\"relationships\":{\"version:collection\":{\"links\":{\"self\":\"http://localhost/api/second/version\"}}},\"links\":{\"self\":\"http://localhost/api/second\"}}" +
+            "]," +
+            "\"links\":{\"self\":\"http://localhost/\",\"related\":[{\"rel\":\"api:collection\",\"href\":\"http://localhost/api\"}]}" +
+            "}";
+
+    @Test
+    void dataElementLink_didFindElementRegardlessOfFieldOrder() throws IOException {
+        assertEquals("http://localhost/api/first", LinkResolver.dataElementLink(factory.createParser(RESPONSE), "first"));
+        assertEquals("http://localhost/api/second", LinkResolver.dataElementLink(factory.createParser(RESPONSE), "second"));
+    }
+
+    @Test
+    void dataElementLink_didReturnNullOnMissingElement() throws IOException {
+        assertNull(LinkResolver.dataElementLink(factory.createParser(RESPONSE), "third"));
+    }
+
+    @Test
+    void relationshipLink_didFindRelationship() throws IOException {
+        assertEquals("http://localhost/api/second/version", LinkResolver.relationshipLink(factory.createParser(RESPONSE), "second", "version:collection"));
+        assertNull(LinkResolver.relationshipLink(factory.createParser(RESPONSE), "first", "version:collection"));
+    }
+
+    @Test
+    void createdLink_didFindLinksOfCreatedElement() throws IOException {
+        String created = "{\"data\":{\"id\":\"third\",\"relationships\":{\"version:collection\":{\"links\":{\"self\":\"http://localhost/api/third/version\"}}},\"links\":{\"self\":\"http://localhost/api/third\"}}}";
+
+        assertEquals("http://localhost/api/third", LinkResolver.createdLink(factory.createParser(created)));
+        assertEquals("http://localhost/api/third/version", LinkResolver.createdRelationshipLink(factory.createParser(created), "version:collection"));
+        assertNull(LinkResolver.createdRelationshipLink(factory.createParser(created), "metadata:collection"));
+    }
+
+    @Test
+    void relatedLink_didFindRelatedCollection() throws IOException {
+        assertEquals("http://localhost/api", LinkResolver.relatedLink(factory.createParser(RESPONSE), "api:collection"));
+        assertNull(LinkResolver.relatedLink(factory.createParser(RESPONSE), "metadata:collection"));
+    }
+}
@@ -0,0 +1,271 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.ListingCache;
+import io.apimap.client.client.query.CreateResourceQuery;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class OnMissingCreateTest {
+
+    @Test
+    void onMissingCreate_continuesFromSelfLinkOfCreatedResource() throws Exception, IncorrectTokenException {
+        StubApiServer server = server("http://create-self.test", new AtomicBoolean(false));
+
+        ApiDataRestEntity created = create(server);
+
+        assertNotNull(created);
+        assertEquals(1, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("POST", "/api/apis"));
+        assertEquals(1, server.count("GET", "/api/apis/new"));
+    }
+
+    @Test
+    void onMissingCreate_continuesFromLocationOfCreatedResource() throws Exception, IncorrectTokenException {
+        StubApiServer server = server("http://create-location.test", new AtomicBoolean(false));
+        server.on("POST", "/api/apis", request -> {
+            CloseableHttpResponse response = StubApiServer.response(201, "{\"data\":{\"id\":\"new\"}}");
+            when(response.getFirstHeader(HttpHeaders.LOCATION)).thenReturn(new BasicHeader(HttpHeaders.LOCATION, "/api/apis/new"));
+            return response;
+        });
+
+        ApiDataRestEntity created = create(server);
+
+        assertNotNull(created);
+        assertEquals(1, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("GET", "/api/apis/new"));
+    }
+
+    @Test
+    void createFirst_postsWithoutReadingCollection() throws Exception, IncorrectTokenException {
+        StubApiServer server = server("http://create-first.test", new AtomicBoolean(false));
+
+        ApiDataRestEntity created = create(server, CreateResourceQuery.STRATEGY.CREATE_FIRST);
+
+        assertNotNull(created);
+        assertEquals(0, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("POST", "/api/apis"));
+    }
+
+    @Test
+    void createFirst_followsExistingResourceOnConflict() throws Exception, IncorrectTokenException {
+        StubApiServer server = server("http://create-conflict.test", new AtomicBoolean(true));
+
+        ApiDataRestEntity existing = create(server, CreateResourceQuery.STRATEGY.CREATE_FIRST);
+
+        assertNotNull(existing);
+        assertEquals(1, server.count("POST", "/api/apis"));
+        assertEquals(1, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("GET", "/api/apis/new"));
+    }
+
+    @Test
+    void onMissingCreate_buildsSuppliedObjectOnlyWhenMissing() throws Exception, IncorrectTokenException {
+        AtomicInteger built = new AtomicInteger();
+        Supplier<ApiDataRestEntity> api = () -> {
+            built.incrementAndGet();
+            return new ApiDataRestEntity("new", "git://");
+        };
+
+        assertNotNull(create(server("http://create-supplier-existing.test", new AtomicBoolean(true)), api));
+        assertEquals(0, built.get());
+
+        assertNotNull(create(server("http://create-supplier-missing.test", new AtomicBoolean(false)), api));
+        assertEquals(1, built.get());
+    }
+
+    @Test
+    void onMissingCreate_skipsReadingRecentlyMissingResource() throws Exception, IncorrectTokenException {
+        StubApiServer server = server("http://create-recently-missing.test", new AtomicBoolean(false));
+
+        ApiDataRestEntity missing = new RestClient(configuration(server), server.httpClient())
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+
+        assertNull(missing);
+        assertNotNull(create(server));
+        assertEquals(1, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("POST", "/api/apis"));
+    }
+
+    @Test
+    void onMissingCreate_readsListingAgainAfterConflict() throws Exception, IncorrectTokenException {
+        AtomicBoolean exists = new AtomicBoolean(false);
+        StubApiServer server = server("http://create-stale-listing.test", exists);
+        ListingCache listingCache = new ListingCache();
+
+        RestClient reader = new RestClient(configuration(server), server.httpClient());
+        reader.setListingCache(listingCache);
+        assertNull(reader
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON));
+
+        // Created elsewhere after the empty listing was cached
+        exists.set(true);
+
+        RestClient creator = new RestClient(configuration(server), server.httpClient());
+        creator.setListingCache(listingCache);
+        ApiDataRestEntity existing = creator
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .onMissingCreate("new", new ApiDataRestEntity("new", "git://"), null, CreateResourceQuery.STRATEGY.LOOKUP_FIRST)
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+
+        assertNotNull(existing);
+        assertEquals(1, server.count("POST", "/api/apis"));
+        assertEquals(2, server.count("GET", "/api/apis"));
+    }
+
+    @Test
+    void missingCache_disabledByDefault() throws Exception, IncorrectTokenException {
+        AtomicBoolean exists = new AtomicBoolean(false);
+        StubApiServer server = server("http://create-missing-default.test", exists);
+        RestClientConfiguration configuration = server.configuration();
+
+        assertNull(new RestClient(configuration, server.httpClient())
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON));
+
+        // Created by another process
+        exists.set(true);
+
+        assertNotNull(new RestClient(configuration, server.httpClient())
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .onMissingCreate("new", new ApiDataRestEntity("new", "git://"), null)
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON));
+        assertEquals(2, server.count("GET", "/api/apis"));
+        assertEquals(0, server.count("POST", "/api/apis"));
+    }
+
+    @Test
+    void onMissingCreate_concurrentChainsCreateOnce() throws Exception {
+        StubApiServer server = server("http://create-concurrent.test", new AtomicBoolean(false));
+        // A slow create, chains running at the same time read the collection while it's still empty
+        server.on("POST", "/api/apis", request -> {
+            Thread.sleep(100);
+            return null;
+        });
+
+        int chains = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(chains);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ApiDataRestEntity>> results = new ArrayList<>();
+        List<Object> callbacks = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < chains; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return new RestClient(configuration(server), server.httpClient())
+                            .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                            .followResource("new")
+                            .onMissingCreate("new", new ApiDataRestEntity("new", "git://"), callbacks::add)
+                            .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+                } catch (IncorrectTokenException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<ApiDataRestEntity> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+
+        executor.shutdown();
+
+        assertEquals(1, server.count("POST", "/api/apis"));
+        // Chains that waited for the create read the created resource themselves, only the creator is called back
+        assertEquals(1, callbacks.size());
+        assertTrue(callbacks.get(0) instanceof ApiDataRestEntity);
+    }
+
+    private static ApiDataRestEntity create(StubApiServer server, Supplier<ApiDataRestEntity> api) throws Exception, IncorrectTokenException {
+        return new RestClient(configuration(server), server.httpClient())
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .onMissingCreate("new", ApiDataRestEntity.class, api, null)
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+    }
+
+    private static ApiDataRestEntity create(StubApiServer server) throws Exception, IncorrectTokenException {
+        return create(server, CreateResourceQuery.STRATEGY.LOOKUP_FIRST);
+    }
+
+    private static ApiDataRestEntity create(StubApiServer server, CreateResourceQuery.STRATEGY strategy) throws Exception, IncorrectTokenException {
+        return new RestClient(configuration(server), server.httpClient())
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("new")
+                .onMissingCreate("new", new ApiDataRestEntity("new", "git://"), null, strategy)
+                .getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+    }
+
+    private static RestClientConfiguration configuration(StubApiServer server) {
+        RestClientConfiguration configuration = server.configuration();
+        configuration.setMissingCacheTtlMillis(5000);
+        return configuration;
+    }
+
+    /**
+     * An API collection that lists the resource once it exists. The first POST creates it, later ones are answered
+     * with 409 Conflict.
+     */
+    private static StubApiServer server(String host, AtomicBoolean exists) throws Exception {
+        StubApiServer server = new StubApiServer(host);
+        String created = "{\"data\":{\"id\":\"new\",\"links\":{\"self\":\"" + server.url("/api/apis/new") + "\"}}}";
+
+        return server
+                .get("/api/apis", request -> StubApiServer.response(exists.get()
+                        ? "{\"data\":[{\"id\":\"new\",\"links\":{\"self\":\"" + server.url("/api/apis/new") + "\"}}]}"
+                        : "{\"data\":[]}"))
+                .get("/api/apis/new", "{\"data\":{\"id\":\"new\"}}")
+                .on("POST", "/api/apis", request -> exists.getAndSet(true)
+                        ? StubApiServer.response(409, "{\"errors\":[{\"status\":\"409\"}]}")
+                        : StubApiServer.response(201, created));
+    }
+}
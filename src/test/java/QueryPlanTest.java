@@ -0,0 +1,174 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.QueryPlan;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.query.CreateResourceQuery;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryPlanTest {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    private static final int APIS_COUNT = 50;
+    private static final int THREADS = 16;
+    private static final int EXECUTIONS_PER_THREAD = 200;
+
+    private static final QueryPlan PLAN = QueryPlan.builder()
+            .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+            .followResource("{api}")
+            .build();
+
+    @Test
+    void client_concurrentExecutions() throws Exception {
+        StubApiServer server = server();
+        RestClientConfiguration configuration = server.configuration();
+        CloseableHttpClient httpClient = server.httpClient();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> failures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            int offset = thread;
+
+            failures.add(executor.submit(() -> {
+                List<String> mismatches = new ArrayList<>();
+                start.await();
+
+                for (int i = 0; i < EXECUTIONS_PER_THREAD; i++) {
+                    String api = "api-" + ((offset + i) % APIS_COUNT);
+
+                    try {
+                        String content = PLAN.client(configuration, httpClient, Collections.singletonMap("api", api))
+                                .getResource(String.class, MARKDOWN);
+
+                        if(!api.equals(content)) {
+                            mismatches.add(api + " != " + content);
+                        }
+                    } catch (IncorrectTokenException e) {
+                        mismatches.add(api + ": " + e.getMessage());
+                    }
+                }
+
+                return mismatches;
+            }));
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        for (Future<List<String>> failure : failures) {
+            assertEquals(Collections.emptyList(), failure.get());
+        }
+    }
+
+    @Test
+    void client_missingParameter() {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PLAN.client(configuration, Collections.emptyMap()));
+    }
+
+    @Test
+    void client_callsFactoryOnlyWhenCreating() throws Exception, IncorrectTokenException {
+        AtomicInteger built = new AtomicInteger();
+        QueryPlan plan = QueryPlan.builder()
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("{api}")
+                .onMissingCreate("{api}", parameters -> {
+                    built.incrementAndGet();
+                    return new ApiDataRestEntity(parameters.get("api"), "git://");
+                }, null)
+                .build();
+
+        StubApiServer existing = server();
+        assertEquals("api-1", plan.client(existing.configuration(), existing.httpClient(), Collections.singletonMap("api", "api-1"))
+                .getResource(String.class, MARKDOWN));
+        assertEquals(0, built.get());
+        assertEquals(0, existing.count("POST", "/api/apis"));
+
+        StubApiServer missing = missingServer("http://plan-missing.test");
+        assertEquals("new", plan.client(missing.configuration(), missing.httpClient(), Collections.singletonMap("api", "new"))
+                .getResource(String.class, MARKDOWN));
+        assertEquals(1, built.get());
+        assertEquals(1, missing.count("POST", "/api/apis"));
+    }
+
+    @Test
+    void client_createsWithStrategyOfStep() throws Exception, IncorrectTokenException {
+        QueryPlan plan = QueryPlan.builder()
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("{api}")
+                .onMissingCreate("{api}", ApiDataRestEntity.class, () -> new ApiDataRestEntity("new", "git://"), null, CreateResourceQuery.STRATEGY.CREATE_FIRST)
+                .build();
+
+        StubApiServer server = missingServer("http://plan-create-first.test");
+
+        assertEquals("new", plan.client(server.configuration(), server.httpClient(), Collections.singletonMap("api", "new"))
+                .getResource(String.class, MARKDOWN));
+        assertEquals(0, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("POST", "/api/apis"));
+    }
+
+    /**
+     * An empty API collection, a POST creates the resource "new".
+     */
+    private static StubApiServer missingServer(String host) throws Exception {
+        StubApiServer server = new StubApiServer(host);
+
+        return server
+                .listing("/api/apis")
+                .on("POST", "/api/apis", request -> StubApiServer.response(201,
+                        "{\"data\":{\"id\":\"new\",\"links\":{\"self\":\"" + server.url("/api/apis/new") + "\"}}}"))
+                .get("/api/apis/new", "new");
+    }
+
+    /**
+     * An API collection whose resources answer with their id.
+     */
+    private static StubApiServer server() throws Exception {
+        StubApiServer server = new StubApiServer("http://plan.test");
+        String[] ids = new String[APIS_COUNT];
+
+        for (int i = 0; i < APIS_COUNT; i++) {
+            ids[i] = "api-" + i;
+            server.get("/api/apis/" + ids[i], ids[i]);
+        }
+
+        return server.listing("/api/apis", ids);
+    }
+}
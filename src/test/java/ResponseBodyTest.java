@@ -0,0 +1,123 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.IncorrectTokenException;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResponseBodyTest {
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    @Test
+    void getResource_readsBodiesOfAnySizeWithinLimit() throws Exception, IncorrectTokenException {
+        String large = String.join("", Collections.nCopies(4096, "readme "));
+        RestClientConfiguration configuration = configuration("http://body.test", 64 * 1024);
+
+        assertEquals(large, new RestClient(configuration, server("http://body.test", entity(large, -1))).getResource(String.class, MARKDOWN));
+        assertEquals("short", new RestClient(configuration, server("http://body.test", entity("short", 5))).getResource(String.class, MARKDOWN));
+        assertEquals("lying", new RestClient(configuration, server("http://body.test", entity("lying", 2))).getResource(String.class, MARKDOWN));
+    }
+
+    @Test
+    void getResource_failsWhenBodyExceedsLimit() throws Exception, IncorrectTokenException {
+        String large = String.join("", Collections.nCopies(1024, "readme "));
+        RestClientConfiguration configuration = configuration("http://body-limit.test", 1024);
+        List<String> errors = new ArrayList<>();
+
+        String readme = new RestClient(configuration, server("http://body-limit.test", entity(large, -1)), errors::add)
+                .getResource(String.class, MARKDOWN);
+
+        assertNull(readme);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("exceeds 1024 bytes"));
+    }
+
+    @Test
+    void getResource_failsWhenPooledBufferIsLargerThanLimit() throws Exception, IncorrectTokenException {
+        String large = String.join("", Collections.nCopies(64 * 1024, "readme "));
+        String small = String.join("", Collections.nCopies(1024, "readme "));
+        List<String> errors = new ArrayList<>();
+
+        // Leaves a buffer of several hundred KB pooled on this thread
+        assertEquals(large, new RestClient(configuration("http://body-pooled.test", 1024 * 1024), server("http://body-pooled.test", entity(large, -1)))
+                .getResource(String.class, MARKDOWN));
+
+        String readme = new RestClient(configuration("http://body-pooled-limit.test", 1024), server("http://body-pooled-limit.test", entity(small, -1)), errors::add)
+                .getResource(String.class, MARKDOWN);
+
+        assertNull(readme);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("exceeds 1024 bytes"));
+    }
+
+    @Test
+    void getResource_failsBeforeReadingWhenContentLengthExceedsLimit() throws Exception, IncorrectTokenException {
+        RestClientConfiguration configuration = configuration("http://body-length.test", 1024);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContentLength()).thenReturn(1L << 40);
+        Consumer<String> errorHandler = mock(Consumer.class);
+
+        new RestClient(configuration, server("http://body-length.test", entity), errorHandler).getResource(String.class, MARKDOWN);
+
+        verify(errorHandler).accept(any());
+        verify(entity, never()).getContent();
+    }
+
+    private static RestClientConfiguration configuration(String host, long maxResponseBodyBytes) {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(host + "/token");
+        configuration.setApiURL(host + "/api");
+        configuration.setMaxResponseBodyBytes(maxResponseBodyBytes);
+        return configuration;
+    }
+
+    /**
+     * A body with the given Content-Length, -1 if it is not known.
+     */
+    private static HttpEntity entity(String body, long contentLength) throws Exception {
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContentLength()).thenReturn(contentLength);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return entity;
+    }
+
+    private static CloseableHttpClient server(String host, HttpEntity resource) throws Exception {
+        return new StubApiServer(host)
+                .get("/api", request -> StubApiServer.response(200, resource))
+                .httpClient();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.ResponseCache;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class ResponseCacheTest {
+    private static final String ETAG = "\"v1\"";
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    @Test
+    void getResource_revalidatesCachedResponses() throws Exception, IncorrectTokenException {
+        AtomicInteger bodies = new AtomicInteger();
+
+        StubApiServer server = new StubApiServer("http://cache.test");
+        server.get("/api", cached(server.rootBody(), bodies))
+                .get("/api/apis", cached(server.listingBody("/api/apis", "a"), bodies))
+                .get("/api/apis/a", cached("readme", bodies));
+
+        RestClientConfiguration configuration = server.configuration();
+        configuration.setPathCacheSize(0);
+
+        for (int i = 0; i < 3; i++) {
+            String content = new RestClient(configuration, server.httpClient())
+                    .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                    .followResource("a")
+                    .getResource(String.class, MARKDOWN);
+
+            assertEquals("readme", content);
+        }
+
+        ResponseCache.Statistics statistics = ResponseCache.statistics(configuration);
+
+        assertEquals(3, bodies.get());
+        assertEquals(3, statistics.getMisses());
+        assertEquals(6, statistics.getRevalidations());
+        assertEquals(6, statistics.getHits());
+        assertEquals(3, statistics.getEntries());
+    }
+
+    /**
+     * Answers with the body and an ETag, or 304 Not Modified if the request sends the ETag back.
+     */
+    private static StubApiServer.Handler cached(String body, AtomicInteger bodies) {
+        return request -> {
+            if(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH) != null
+                    && ETAG.equals(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue())) {
+                return etag(StubApiServer.response(304, (String) null));
+            }
+
+            bodies.incrementAndGet();
+            return etag(StubApiServer.response(body));
+        };
+    }
+
+    private static CloseableHttpResponse etag(CloseableHttpResponse response) {
+        when(response.getFirstHeader(HttpHeaders.ETAG)).thenReturn(new BasicHeader(HttpHeaders.ETAG, ETAG));
+        return response;
+    }
+}
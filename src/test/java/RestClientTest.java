@@ -17,17 +17,30 @@ limitations under the License.
 import io.apimap.api.rest.ApiDataRestEntity;
 import io.apimap.client.RestClient;
 import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.HttpClientRegistry;
 import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -83,4 +96,68 @@ public class RestClientTest {
 
         verify(errorHandler, times(1)).accept(any());
     }
+
+    @Test
+    void getResource_sendsOneRequestIdPerOperation() throws Exception, IncorrectTokenException {
+        StubApiServer server = new StubApiServer("http://request-id.test")
+                .get("/api/apis", "{\"data\":{\"id\":\"api\"}}");
+        RestClientConfiguration configuration = server.configuration();
+        configuration.setPathCacheSize(0);
+
+        new RestClient(configuration, server.httpClient()).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+        List<String> first = requestIds(server);
+        server.requests().clear();
+        new RestClient(configuration, server.httpClient()).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+        List<String> requestIds = requestIds(server);
+
+        assertTrue(first.size() > 1);
+        assertEquals(1, new HashSet<>(first).size());
+        assertEquals(1, new HashSet<>(requestIds).size());
+        assertNotEquals(first.get(0), requestIds.get(0));
+    }
+
+    private static List<String> requestIds(StubApiServer server) {
+        List<String> requestIds = new ArrayList<>();
+
+        synchronized (server.requests()) {
+            for (ClassicHttpRequest request : server.requests()) {
+                requestIds.add(request.getFirstHeader(HttpClientRegistry.REQUEST_ID_HEADER).getValue());
+            }
+        }
+
+        return requestIds;
+    }
+
+    @Test
+    void configuration_frozenByFirstUse() {
+        RestClientConfiguration configuration = new RestClientConfiguration("http://shared-client.test");
+        configuration.setDebugMode(true);
+        CloseableHttpClient shared = HttpClientRegistry.getClient(configuration);
+
+        assertTrue(configuration.isFrozen());
+        assertThrows(IllegalStateException.class, () -> configuration.setSecret("changed"));
+        assertThrows(IllegalStateException.class, () -> configuration.setConnectTimeoutMillis(1));
+        assertSame(shared, HttpClientRegistry.getClient(configuration));
+
+        HttpClientRegistry.close(configuration);
+        assertNotSame(shared, HttpClientRegistry.getClient(configuration));
+        HttpClientRegistry.close(configuration);
+    }
+
+    @Test
+    void configuration_perHostLimitsGetTheirOwnClient() {
+        RestClientConfiguration uniform = new RestClientConfiguration("http://per-host.test");
+        RestClientConfiguration perHost = new RestClientConfiguration("http://per-host.test");
+        perHost.setMaxConnectionsPerHost("https://api.per-host.test", 200);
+
+        assertNotSame(HttpClientRegistry.getClient(uniform), HttpClientRegistry.getClient(perHost));
+        assertEquals(Collections.singletonMap("https://api.per-host.test", 200), perHost.getMaxConnectionsPerHost());
+
+        RestClientConfiguration noHost = new RestClientConfiguration("http://per-host.test");
+        noHost.setMaxConnectionsPerHost("api.per-host.test", 200);
+        assertThrows(IllegalArgumentException.class, () -> HttpClientRegistry.getClient(noHost));
+
+        HttpClientRegistry.close(uniform);
+        HttpClientRegistry.close(perHost);
+    }
 }
@@ -0,0 +1,139 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.exception.ApiRequestFailedException;
+import io.apimap.client.exception.IncorrectTokenException;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RetryPolicyTest {
+
+    @Test
+    void deleteResource_retriesUnavailable() throws Exception, IncorrectTokenException {
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server(requests, 503, null, 1);
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration(), httpClient);
+
+        assertEquals(204, client.deleteResource(new HttpDelete(new URI("http://retry.test/a"))));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void deleteResource_honorsRetryAfter() throws Exception, IncorrectTokenException {
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server(requests, 429, "0", 1);
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration(), httpClient);
+
+        assertEquals(204, client.deleteResource(new HttpDelete(new URI("http://retry-after.test/a"))));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void deleteResource_doesNotWaitBeyondMaxBackoff() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server(requests, 429, "3600", 1);
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration(), httpClient);
+
+        assertThrows(ApiRequestFailedException.class,
+                () -> client.deleteResource(new HttpDelete(new URI("http://retry-after-long.test/a"))));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void postResource_doesNotRetryResponses() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server(requests, 503, null, 1);
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration(), httpClient);
+
+        assertThrows(ApiRequestFailedException.class,
+                () -> client.postResource(new HttpPost(new URI("http://retry-post.test/a")), new ApiDataRestEntity(), ApiDataRestEntity.class));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void deleteResource_failsFastWhileCircuitIsOpen() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        CloseableHttpClient httpClient = server(requests, 503, null, Integer.MAX_VALUE);
+
+        RestClientConfiguration configuration = configuration();
+        configuration.setMaxRetries(0);
+        configuration.setCircuitBreakerFailureThreshold(2);
+
+        SurrogateBaseRestClient client = new SurrogateBaseRestClient(configuration, httpClient);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ApiRequestFailedException.class,
+                    () -> client.deleteResource(new HttpDelete(new URI("http://circuit.test/a"))));
+        }
+
+        assertEquals(2, requests.get());
+    }
+
+    private static RestClientConfiguration configuration() {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setRetryInitialBackoffMillis(1);
+        configuration.setRetryMaxBackoffMillis(100);
+        return configuration;
+    }
+
+    /**
+     * Answers the first failures requests with the failure status, and 204 No Content after that.
+     */
+    private static CloseableHttpClient server(AtomicInteger requests, int status, String retryAfter, int failures) throws Exception {
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute(any())).thenAnswer(invocation -> {
+            CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+
+            if(requests.incrementAndGet() > failures) {
+                when(response.getCode()).thenReturn(204);
+                return response;
+            }
+
+            when(response.getCode()).thenReturn(status);
+            when(response.getEntity()).thenReturn(new StringEntity("unavailable", ContentType.TEXT_PLAIN));
+
+            if(retryAfter != null) {
+                when(response.getFirstHeader(HttpHeaders.RETRY_AFTER)).thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, retryAfter));
+            }
+
+            return response;
+        });
+
+        return httpClient;
+    }
+}
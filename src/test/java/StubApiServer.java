@@ -0,0 +1,202 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mocked HTTP client answering like an API on the host. The token is served at host/token, and the API root at
+ * host/api links to the API collection at host/api/apis. Tests add the responses they care about, anything else
+ * is answered with 404 Not Found. Every request is recorded.
+ */
+public class StubApiServer {
+    public static final String TOKEN = "{\"access_token\":\"stub\",\"expires_in\":300}";
+
+    private final String host;
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+    private final List<ClassicHttpRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * Answers a request, or returns null to leave it to the routes added before.
+     */
+    public interface Handler {
+        CloseableHttpResponse answer(ClassicHttpRequest request) throws Exception;
+    }
+
+    private static final class Route {
+        private final String method;
+        private final String uri;
+        private final Handler handler;
+
+        private Route(String method, String uri, Handler handler) {
+            this.method = method;
+            this.uri = uri;
+            this.handler = handler;
+        }
+
+        private boolean matches(ClassicHttpRequest request, String uri) {
+            return (method == null || method.equals(request.getMethod()))
+                    && (this.uri == null || this.uri.equals(uri));
+        }
+    }
+
+    public StubApiServer(String host) throws Exception {
+        this.host = host;
+
+        on(null, null, request -> response(404, "{\"errors\":[{\"status\":\"404\"}]}"));
+        on(null, null, request -> request.getUri().toString().startsWith(host + "/token") ? response(TOKEN) : null);
+        get("/api", rootBody());
+
+        httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute(any())).thenAnswer(invocation -> answer(invocation.getArgument(0)));
+    }
+
+    public String url(String path) {
+        return host + path;
+    }
+
+    public CloseableHttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * A configuration reading the token and the API root of the server.
+     */
+    public RestClientConfiguration configuration() {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(url("/token"));
+        configuration.setApiURL(url("/api"));
+        return configuration;
+    }
+
+    /**
+     * Answers requests with the method to the path, any method if null and any path if null. Routes added later
+     * are asked first.
+     */
+    public StubApiServer on(String method, String path, Handler handler) {
+        routes.add(0, new Route(method, path != null ? url(path) : null, handler));
+        return this;
+    }
+
+    public StubApiServer get(String path, Handler handler) {
+        return on("GET", path, handler);
+    }
+
+    public StubApiServer get(String path, String body) {
+        return get(path, request -> response(body));
+    }
+
+    /**
+     * Lists resources with the ids in the collection at the path, see {@link #listingBody(String, String...)}.
+     */
+    public StubApiServer listing(String path, String... ids) {
+        return get(path, listingBody(path, ids));
+    }
+
+    /**
+     * The API root, linking to the API collection.
+     */
+    public String rootBody() {
+        return "{\"links\":{\"related\":[{\"rel\":\"" + JsonApiRestResponseWrapper.API_COLLECTION + "\",\"href\":\"" + url("/api/apis") + "\"}]}}";
+    }
+
+    /**
+     * A collection of resources with the ids, each with a self link below the collection at the path.
+     */
+    public String listingBody(String path, String... ids) {
+        StringBuilder body = new StringBuilder("{\"data\":[");
+
+        for (int i = 0; i < ids.length; i++) {
+            body.append(i > 0 ? "," : "")
+                    .append("{\"id\":\"").append(ids[i]).append("\",\"links\":{\"self\":\"").append(url(path)).append("/").append(ids[i]).append("\"}}");
+        }
+
+        return body.append("]}").toString();
+    }
+
+    /**
+     * The requests received, oldest first.
+     */
+    public List<ClassicHttpRequest> requests() {
+        return requests;
+    }
+
+    /**
+     * Number of requests with the method to the path, of any method if null.
+     */
+    public long count(String method, String path) throws Exception {
+        synchronized (requests) {
+            long count = 0;
+
+            for (ClassicHttpRequest request : requests) {
+                if((method == null || method.equals(request.getMethod())) && request.getUri().toString().equals(url(path))) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+    }
+
+    public static CloseableHttpResponse response(String body) {
+        return response(200, body);
+    }
+
+    public static CloseableHttpResponse response(int code, String body) {
+        return response(code, body != null ? new StringEntity(body, ContentType.APPLICATION_JSON) : null);
+    }
+
+    public static CloseableHttpResponse response(int code, HttpEntity entity) {
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        when(response.getCode()).thenReturn(code);
+        when(response.getEntity()).thenReturn(entity);
+        return response;
+    }
+
+    private CloseableHttpResponse answer(ClassicHttpRequest request) throws Exception {
+        requests.add(request);
+        String uri = request.getUri().toString();
+
+        for (Route route : routes) {
+            if(route.matches(request, uri)) {
+                CloseableHttpResponse response = route.handler.answer(request);
+
+                if(response != null) {
+                    return response;
+                }
+            }
+        }
+
+        throw new IllegalStateException("No response for " + request.getMethod() + " " + uri);
+    }
+}
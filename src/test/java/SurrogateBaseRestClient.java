@@ -16,6 +16,7 @@ limitations under the License.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.AccessToken;
 import io.apimap.client.client.BaseRestClient;
 import io.apimap.client.client.query.ApiQuery;
 import io.apimap.client.exception.ApiRequestFailedException;
@@ -35,7 +36,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Optional;
-import java.util.UUID;
 
 public class SurrogateBaseRestClient extends BaseRestClient {
 
@@ -52,7 +52,7 @@ public class SurrogateBaseRestClient extends BaseRestClient {
     }
 
     public CloseableHttpClient defaultCloseableHttpClient() {
-        return super.defaultCloseableHttpClient(UUID.randomUUID());
+        return super.defaultCloseableHttpClient();
     }
 
     public void addApiQuery(ApiQuery query) {
@@ -60,27 +60,27 @@ public class SurrogateBaseRestClient extends BaseRestClient {
     }
 
     public Optional<URI> performQueries(CloseableHttpClient client) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
-        return super.performQueries(client, "localhost", "test");
+        return super.performQueries(client, "localhost", new AccessToken("localhost", "test"));
     }
 
-    public URI enumerateQueries(HttpGet request, String jwt, ArrayList<ApiQuery> remainingQueries, CloseableHttpClient client, int queryCallstackDepth) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
+    public URI enumerateQueries(HttpGet request, AccessToken jwt, ArrayList<ApiQuery> remainingQueries, CloseableHttpClient client, int queryCallstackDepth) throws IOException, ApiRequestFailedException, IllegalApiContentException, IncorrectTokenException, URISyntaxException {
         return super.enumerateQueries(request, jwt, remainingQueries, client, queryCallstackDepth);
     }
 
     public int deleteResource(HttpDelete deleteRequest) throws ApiRequestFailedException, IncorrectTokenException {
-        return super.deleteResource(deleteRequest, defaultCloseableHttpClient(UUID.randomUUID()));
+        return super.deleteResource(deleteRequest, defaultCloseableHttpClient());
     }
 
     public <T> T getResource(HttpGet getRequest, Class<T> resourceClassType) throws ApiRequestFailedException, IncorrectTokenException {
-        return super.getResource(getRequest, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient(UUID.randomUUID()));
+        return super.getResource(getRequest, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient());
     }
 
     public <T> T putResource(HttpPut putRequest, Object content, Class<T> resourceClassType) throws ApiRequestFailedException, IncorrectTokenException {
-        return super.putResource(putRequest, content, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient(UUID.randomUUID()));
+        return super.putResource(putRequest, content, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient());
     }
 
     public <T> T postResource(HttpPost postRequest, Object content, Class<T> resourceClassType) throws IllegalApiContentException, IncorrectTokenException, HttpHostConnectException, ApiRequestFailedException {
-        return super.postResource(postRequest, content, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient(UUID.randomUUID()));
+        return super.postResource(postRequest, content, resourceClassType, ContentType.APPLICATION_JSON, defaultCloseableHttpClient());
     }
 
     public int responseStatusCode(CloseableHttpResponse response) throws IOException, IncorrectTokenException {
@@ -0,0 +1,94 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.api.rest.ApiDataRestEntity;
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.client.ListingCache;
+import io.apimap.client.client.TraversalPlanner;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class TraversalPlannerTest {
+
+    @Test
+    void plan_readsSharedHopsOnce() throws Exception {
+        StubApiServer server = server();
+        CloseableHttpClient httpClient = server.httpClient();
+        RestClientConfiguration configuration = server.configuration();
+
+        List<RestClient> clients = Arrays.asList(
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("a"),
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("b"),
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("a"),
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("missing")
+        );
+
+        List<Optional<URI>> paths = new TraversalPlanner(configuration, httpClient).plan(clients);
+
+        assertEquals(URI.create(server.url("/api/apis/a")), paths.get(0).get());
+        assertEquals(URI.create(server.url("/api/apis/b")), paths.get(1).get());
+        assertEquals(URI.create(server.url("/api/apis/a")), paths.get(2).get());
+        assertFalse(paths.get(3).isPresent());
+
+        assertEquals(1, server.count("GET", "/api"));
+        assertEquals(1, server.count("GET", "/api/apis"));
+    }
+
+    @Test
+    void plan_sharesListingsWithClientsWithoutPathCache() throws Exception, IncorrectTokenException {
+        StubApiServer server = server();
+        CloseableHttpClient httpClient = server.httpClient();
+        RestClientConfiguration configuration = server.configuration();
+        configuration.setPathCacheSize(0);
+
+        ListingCache listingCache = new ListingCache();
+        List<RestClient> clients = Arrays.asList(
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("a"),
+                new RestClient(configuration, httpClient).followCollection(JsonApiRestResponseWrapper.API_COLLECTION).followResource("b")
+        );
+
+        new TraversalPlanner(configuration, httpClient).withListingCache(listingCache).plan(clients);
+
+        for (RestClient client : clients) {
+            client.setListingCache(listingCache);
+            client.getResource(ApiDataRestEntity.class, ContentType.APPLICATION_JSON);
+        }
+
+        assertEquals(1, server.count("GET", "/api"));
+        assertEquals(1, server.count("GET", "/api/apis"));
+        assertEquals(1, server.count("GET", "/api/apis/a"));
+        assertEquals(1, server.count("GET", "/api/apis/b"));
+    }
+
+    private static StubApiServer server() throws Exception {
+        return new StubApiServer("http://planner.test")
+                .listing("/api/apis", "a", "b")
+                .get("/api/apis/a", "{}")
+                .get("/api/apis/b", "{}");
+    }
+}
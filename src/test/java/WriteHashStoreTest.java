@@ -0,0 +1,147 @@
+/*
+Copyright 2021-2023 TELENOR NORGE AS
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+import io.apimap.client.RestClient;
+import io.apimap.client.RestClientConfiguration;
+import io.apimap.client.WriteResult;
+import io.apimap.client.client.WriteHashStore;
+import io.apimap.client.exception.IncorrectTokenException;
+import io.apimap.rest.jsonapi.JsonApiRestResponseWrapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class WriteHashStoreTest {
+    private static final String HOST = "http://write.test";
+    private static final ContentType MARKDOWN = ContentType.create("text/markdown");
+
+    @Test
+    void createOrUpdateResourceIfChanged_skipsUnchangedContent() throws Exception, IncorrectTokenException {
+        AtomicInteger puts = new AtomicInteger();
+        CloseableHttpClient httpClient = server(puts, new AtomicReference<>());
+
+        RestClientConfiguration configuration = configuration("/token/skip");
+
+        assertTrue(write(configuration, httpClient, "readme").isSent());
+        assertFalse(write(configuration, httpClient, "readme").isSent());
+        assertTrue(write(configuration, httpClient, "changed readme").isSent());
+        assertFalse(write(configuration, httpClient, "changed readme").isSent());
+
+        assertEquals(2, puts.get());
+    }
+
+    @Test
+    void createOrUpdateResourceIfChanged_sendsWhenServerEtagChanged() throws Exception, IncorrectTokenException {
+        AtomicInteger puts = new AtomicInteger();
+        AtomicReference<String> etag = new AtomicReference<>("\"w1\"");
+        CloseableHttpClient httpClient = server(puts, etag);
+
+        RestClientConfiguration configuration = configuration("/token/etag");
+
+        assertTrue(write(configuration, httpClient, "readme").isSent());
+        assertFalse(write(configuration, httpClient, "readme").isSent());
+
+        // Somebody else changed the readme
+        etag.set("\"w2\"");
+
+        assertTrue(write(configuration, httpClient, "readme").isSent());
+        assertEquals(2, puts.get());
+    }
+
+    @Test
+    void createOrUpdateResourceIfChanged_readsHashesFromFile() throws Exception, IncorrectTokenException {
+        Path file = Files.createTempFile("apimap-write-hashes", ".tsv");
+
+        try {
+            AtomicInteger puts = new AtomicInteger();
+            CloseableHttpClient httpClient = server(puts, new AtomicReference<>());
+
+            RestClientConfiguration configuration = configuration("/token/file");
+            configuration.setWriteHashFile(file.toString());
+
+            assertTrue(write(configuration, httpClient, "readme").isSent());
+
+            WriteHashStore.clear();
+
+            assertFalse(write(configuration, httpClient, "readme").isSent());
+            assertEquals(1, puts.get());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static WriteResult<String> write(RestClientConfiguration configuration, CloseableHttpClient httpClient, String readme) throws Exception, IncorrectTokenException {
+        return new RestClient(configuration, httpClient)
+                .followCollection(JsonApiRestResponseWrapper.API_COLLECTION)
+                .followResource("a")
+                .createOrUpdateResourceIfChanged(readme, MARKDOWN);
+    }
+
+    /**
+     * A configuration of its own for each test, told apart by the token path.
+     */
+    private static RestClientConfiguration configuration(String tokenPath) {
+        RestClientConfiguration configuration = new RestClientConfiguration();
+        configuration.setOrchestraURL(HOST + tokenPath);
+        configuration.setApiURL(HOST + "/api");
+        return configuration;
+    }
+
+    /**
+     * Answers the traversal and counts PUT requests to the resource. GET requests revalidating the resource get
+     * 304 Not Modified while they carry the current ETag.
+     */
+    private static CloseableHttpClient server(AtomicInteger puts, AtomicReference<String> etag) throws Exception {
+        return new StubApiServer(HOST)
+                .listing("/api/apis", "a")
+                .on("PUT", "/api/apis/a", request -> {
+                    puts.incrementAndGet();
+                    return response(200, "readme", etag.get());
+                })
+                .get("/api/apis/a", request -> {
+                    if(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH) != null
+                            && request.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue().equals(etag.get())) {
+                        return response(304, null, etag.get());
+                    }
+
+                    return response(200, "readme", etag.get());
+                })
+                .httpClient();
+    }
+
+    private static CloseableHttpResponse response(int code, String body, String etag) {
+        CloseableHttpResponse response = StubApiServer.response(code, body);
+
+        if(etag != null) {
+            when(response.getFirstHeader(HttpHeaders.ETAG)).thenReturn(new BasicHeader(HttpHeaders.ETAG, etag));
+        }
+
+        return response;
+    }
+}